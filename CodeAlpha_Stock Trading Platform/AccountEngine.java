@@ -0,0 +1,277 @@
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Hosts many accounts, each pinned to one of a fixed set of shards. A shard is a single
+ * thread that owns its accounts outright: every request for an account, and every fill
+ * for its orders, is run on that thread in arrival order, so balances and holdings change
+ * atomically without any lock shared between accounts. Throughput scales with the number
+ * of shards, up to the core count.
+ *
+ * <p>A request completes only after the trade logs of every account it filled are forced to
+ * disk. Fills queued from other shards are forced when the mailbox runs dry, so a burst of
+ * them shares one flush per account.
+ */
+public class AccountEngine implements AutoCloseable {
+    private final Market market;
+    private final Shard[] shards;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public AccountEngine(Market market) {
+        this(market, Runtime.getRuntime().availableProcessors());
+    }
+
+    public AccountEngine(Market market, int shardCount) {
+        if (shardCount <= 0) throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        this.market = market;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    /** Opens an account and completes with its id once the owning shard has registered it. */
+    public CompletableFuture<Integer> openAccount(String name, double balance) {
+        int id = nextId.getAndIncrement();
+        Shard shard = shardOf(id);
+        return CompletableFuture.supplyAsync(() -> {
+            User user = new User(name, balance, market);
+            user.routeFillsThrough(new Router(user, shard));
+            shard.put(id / shards.length, user);
+            return id;
+        }, shard.executor);
+    }
+
+    /**
+     * Runs {@code action} against the account on its shard thread. Exceptions thrown by the
+     * action (for example a rejected order) complete the future exceptionally; a failure to
+     * force the trade logs afterwards is attached to it as suppressed rather than replacing it.
+     */
+    public <T> CompletableFuture<T> submit(int accountId, Function<User, T> action) {
+        checkAccount(accountId);
+        Shard shard = shardOf(accountId);
+        int index = accountId / shards.length;
+        return CompletableFuture.supplyAsync(() -> {
+            T result;
+            try {
+                result = action.apply(shard.get(index));
+            } catch (RuntimeException | Error e) {
+                try {
+                    shard.syncFilled();
+                } catch (RuntimeException | Error syncFailure) {
+                    e.addSuppressed(syncFailure);
+                }
+                throw e;
+            }
+            shard.syncFilled();
+            return result;
+        }, shard.executor);
+    }
+
+    public CompletableFuture<Long> buy(int accountId, String symbol, int qty) {
+        Stock stock = stock(symbol);
+        return submit(accountId, user -> user.buy(stock, qty));
+    }
+
+    public CompletableFuture<Long> sell(int accountId, String symbol, int qty) {
+        Stock stock = stock(symbol);
+        return submit(accountId, user -> user.sell(stock, qty));
+    }
+
+    public CompletableFuture<Long> placeLimitOrder(int accountId, String symbol, boolean buy, int qty, double price) {
+        Stock stock = stock(symbol);
+        return submit(accountId, user -> user.placeLimitOrder(stock, buy, qty, price));
+    }
+
+    public CompletableFuture<Boolean> cancelOrder(int accountId, String symbol, long orderId) {
+        Stock stock = stock(symbol);
+        return submit(accountId, user -> user.cancelOrder(stock, orderId));
+    }
+
+    public CompletableFuture<Double> getBalance(int accountId) {
+        return submit(accountId, User::getBalance);
+    }
+
+    public int getAccountCount() {
+        return nextId.get();
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Lets each shard finish the work already queued, then stops it and applies the fills that
+     * arrived meanwhile. An interrupt while waiting ends the wait and is left set on the calling thread.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard shard : shards) {
+            if (shard.executor.isTerminated()) shard.runLate();
+        }
+    }
+
+    private Stock stock(String symbol) {
+        Stock stock = market.getStock(symbol);
+        if (stock == null) throw new IllegalArgumentException("Unknown symbol: " + symbol);
+        return stock;
+    }
+
+    private void checkAccount(int accountId) {
+        if (accountId < 0 || accountId >= nextId.get()) {
+            throw new IllegalArgumentException("Unknown account: " + accountId);
+        }
+    }
+
+    private Shard shardOf(int accountId) {
+        return shards[accountId % shards.length];
+    }
+
+    /** One single-threaded mailbox and the accounts it owns; the arrays are only touched on its thread. */
+    private static final class Shard {
+        private final BlockingQueue<Runnable> mailbox = new LinkedBlockingQueue<>();
+        private final ExecutorService executor;
+        private volatile Thread thread;
+        private User[] accounts = new User[16];
+        // Accounts filled since their trade logs were last forced.
+        private User[] filled = new User[4];
+        private int filledCount;
+        // Fills and cancels that reached a closed shard, applied in order once its thread has stopped.
+        private final Queue<Runnable> late = new ConcurrentLinkedQueue<>();
+
+        Shard(int index) {
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, mailbox, r -> {
+                Thread t = new Thread(r, "account-shard-" + index);
+                t.setDaemon(true);
+                thread = t;
+                return t;
+            });
+        }
+
+        void markFilled(User user) {
+            for (int i = 0; i < filledCount; i++) {
+                if (filled[i] == user) return;
+            }
+            if (filledCount == filled.length) filled = Arrays.copyOf(filled, filledCount * 2);
+            filled[filledCount++] = user;
+        }
+
+        void syncFilled() {
+            try {
+                for (int i = 0; i < filledCount; i++) {
+                    filled[i].getPortfolio().syncTradeLog();
+                }
+            } finally {
+                Arrays.fill(filled, 0, filledCount, null);
+                filledCount = 0;
+            }
+        }
+
+        /** Called after a queued fill; defers the force while more work is waiting behind it. */
+        void syncFilledIfIdle() {
+            if (mailbox.isEmpty()) syncFilled();
+        }
+
+        void put(int index, User user) {
+            if (index >= accounts.length) {
+                accounts = Arrays.copyOf(accounts, Math.max(index + 1, accounts.length * 2));
+            }
+            accounts[index] = user;
+        }
+
+        User get(int index) {
+            User user = index < accounts.length ? accounts[index] : null;
+            // Ids are handed out before the open request reaches the shard.
+            if (user == null) throw new IllegalStateException("Account not open yet");
+            return user;
+        }
+
+        boolean isCurrentThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        /**
+         * Queues {@code task} to the shard thread. Called from inside the matcher, so it never
+         * throws: once the shard is closed the task waits in {@code late} for the thread to stop.
+         */
+        void deliver(Runnable task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                late.add(task);
+                if (executor.isTerminated()) runLate();
+            }
+        }
+
+        /** Applies the late tasks on the calling thread; only once the shard thread has stopped. */
+        void runLate() {
+            synchronized (late) {
+                for (Runnable task; (task = late.poll()) != null; ) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Late fill failed on a closed shard: " + e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers fills to an account on its own shard. An order's own sweep fills it on the
+     * shard thread and is applied directly; resting orders filled by someone else's order
+     * are queued to the shard like any other request, or held until it stops if it is closed.
+     */
+    private static final class Router implements OrderOwner {
+        private final User user;
+        private final Shard shard;
+
+        Router(User user, Shard shard) {
+            this.user = user;
+            this.shard = shard;
+        }
+
+        @Override
+        public void onFill(long orderId, int symbolId, boolean buy, int qty, double fillPrice, double limitPrice) {
+            if (shard.isCurrentThread()) {
+                user.onFill(orderId, symbolId, buy, qty, fillPrice, limitPrice);
+                shard.markFilled(user);
+            } else {
+                shard.deliver(() -> {
+                    user.onFill(orderId, symbolId, buy, qty, fillPrice, limitPrice);
+                    shard.markFilled(user);
+                    shard.syncFilledIfIdle();
+                });
+            }
+        }
+
+        @Override
+        public void onCancel(long orderId, int symbolId, boolean buy, int qty, double limitPrice) {
+            if (shard.isCurrentThread()) {
+                user.onCancel(orderId, symbolId, buy, qty, limitPrice);
+            } else {
+                shard.deliver(() -> user.onCancel(orderId, symbolId, buy, qty, limitPrice));
+            }
+        }
+    }
+}
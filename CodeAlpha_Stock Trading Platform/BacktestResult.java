@@ -0,0 +1,93 @@
+/** Outcome of one strategy run over a tick file. */
+public class BacktestResult {
+    private final String name;
+    private final double startingCash;
+    private final double finalEquity;
+    private final double realizedPnl;
+    private final double unrealizedPnl;
+    private final double maxDrawdown;
+    private final int fills;
+    private final long boughtQty;
+    private final long soldQty;
+    private final long rejectedOrders;
+    private final long ticks;
+    private final long elapsedMillis;
+
+    BacktestResult(String name, double startingCash, double finalEquity, double realizedPnl, double unrealizedPnl,
+                   double maxDrawdown, int fills, long boughtQty, long soldQty, long rejectedOrders,
+                   long ticks, long elapsedMillis) {
+        this.name = name;
+        this.startingCash = startingCash;
+        this.finalEquity = finalEquity;
+        this.realizedPnl = realizedPnl;
+        this.unrealizedPnl = unrealizedPnl;
+        this.maxDrawdown = maxDrawdown;
+        this.fills = fills;
+        this.boughtQty = boughtQty;
+        this.soldQty = soldQty;
+        this.rejectedOrders = rejectedOrders;
+        this.ticks = ticks;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPnl() {
+        return finalEquity - startingCash;
+    }
+
+    public double getReturn() {
+        return getPnl() / startingCash;
+    }
+
+    public double getFinalEquity() {
+        return finalEquity;
+    }
+
+    public double getRealizedPnl() {
+        return realizedPnl;
+    }
+
+    public double getUnrealizedPnl() {
+        return unrealizedPnl;
+    }
+
+    /** Largest fall in equity from a previous peak, as a fraction of that peak. */
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    public int getFills() {
+        return fills;
+    }
+
+    public long getBoughtQty() {
+        return boughtQty;
+    }
+
+    public long getSoldQty() {
+        return soldQty;
+    }
+
+    public long getRejectedOrders() {
+        return rejectedOrders;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s | P&L $%.2f (%.2f%%) | realized $%.2f unrealized $%.2f | max DD %.2f%% | "
+                        + "fills %d (bought %d, sold %d) | rejected %d | %d ticks in %d ms",
+                name, getPnl(), getReturn() * 100, realizedPnl, unrealizedPnl, maxDrawdown * 100,
+                fills, boughtQty, soldQty, rejectedOrders, ticks, elapsedMillis);
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a {@link TickFile} through the same Market, order book, User and Portfolio code
+ * that runs live. Each run builds its own market on a {@link SimulatedClock} driven by
+ * the tick timestamps, with a {@link MarketMaker} for liquidity. Runs share only the
+ * read-only mapped tick data, so many can go in parallel.
+ */
+public class Backtester {
+    private final TickFile ticks;
+    private final double startingCash;
+    private final double halfSpread;
+    private final int quoteSize;
+
+    public Backtester(TickFile ticks, double startingCash) {
+        this(ticks, startingCash, 0.0005, 1_000_000);
+    }
+
+    public Backtester(TickFile ticks, double startingCash, double halfSpread, int quoteSize) {
+        this.ticks = ticks;
+        this.startingCash = startingCash;
+        this.halfSpread = halfSpread;
+        this.quoteSize = quoteSize;
+    }
+
+    public BacktestResult run(String name, Strategy strategy) throws IOException {
+        long started = System.nanoTime();
+        SimulatedClock clock = new SimulatedClock(ticks.getFirstNanos());
+        Market market = new Market(clock);
+        Stock[] stocks = new Stock[ticks.getSymbolCount()];
+        for (int i = 0; i < stocks.length; i++) {
+            stocks[i] = market.addStock(ticks.getSymbol(i), ticks.getFirstPrice(i));
+        }
+        new MarketMaker(market, halfSpread, quoteSize);
+        User user = new User(name, startingCash, market);
+        Portfolio portfolio = user.getPortfolio();
+        strategy.onStart(market, user);
+
+        long count = 0;
+        long rejected = 0;
+        double peak = startingCash;
+        double maxDrawdown = 0;
+        TickFile.Cursor cursor = ticks.cursor();
+        while (cursor.next()) {
+            clock.advanceTo(cursor.epochNanos());
+            Stock stock = stocks[cursor.symbol()];
+            double price = cursor.price();
+            stock.setPrice(price);
+            try {
+                strategy.onTick(stock, price);
+            } catch (IllegalArgumentException e) {
+                rejected++;
+            }
+            double equity = user.getSettledCash() + portfolio.getMarketValue();
+            if (equity > peak) {
+                peak = equity;
+            } else if ((peak - equity) / peak > maxDrawdown) {
+                maxDrawdown = (peak - equity) / peak;
+            }
+            count++;
+        }
+
+        long bought = 0;
+        long sold = 0;
+        TransactionLedger.Cursor fills = portfolio.getTransactions().cursor();
+        while (fills.next()) {
+            if (fills.quantity() > 0) bought += fills.quantity(); else sold -= fills.quantity();
+        }
+        return new BacktestResult(name, startingCash, user.getSettledCash() + portfolio.getMarketValue(),
+                portfolio.getRealizedPnl(), portfolio.getUnrealizedPnl(), maxDrawdown,
+                portfolio.getTransactions().size(), bought, sold, rejected, count,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /** Runs every strategy over the same data on {@code threads} threads; results keep the map's order. */
+    public List<BacktestResult> runAll(Map<String, Strategy> strategies, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BacktestResult>> futures = new ArrayList<>();
+            for (Map.Entry<String, Strategy> entry : strategies.entrySet()) {
+                futures.add(pool.submit(() -> run(entry.getKey(), entry.getValue())));
+            }
+            List<BacktestResult> results = new ArrayList<>();
+            for (Future<BacktestResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Backtest interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            throw new IllegalStateException("Backtest failed", cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/** One completed OHLC bar. Volume is traded quantity, or the tick count for feed-only prices. */
+public class Bar {
+    private final long startMillis;
+    private final double open;
+    private final double high;
+    private final double low;
+    private final double close;
+    private final long volume;
+
+    public Bar(long startMillis, double open, double high, double low, double close, long volume) {
+        this.startMillis = startMillis;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public double getOpen() {
+        return open;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    public double getLow() {
+        return low;
+    }
+
+    public double getClose() {
+        return close;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%tF %<tT | O %.2f H %.2f L %.2f C %.2f | V %d", startMillis, open, high, low, close, volume);
+    }
+}
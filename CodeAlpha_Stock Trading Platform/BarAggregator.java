@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Folds every price update into OHLC bars at several intervals at once and keeps rolling
+ * indicators per symbol. Completed bars go to a {@link BarStore}. State lives in one
+ * small object per stock, indexed by market slot; updates to a symbol lock only that
+ * symbol's state, so tick workers on different symbols never contend.
+ */
+public class BarAggregator implements PriceListener {
+    public enum Interval {
+        SECOND(1_000L, "1s"), MINUTE(60_000L, "1m"), HOUR(3_600_000L, "1h");
+
+        private final long millis;
+        private final String label;
+
+        Interval(long millis, String label) {
+            this.millis = millis;
+            this.label = label;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Interval[] INTERVALS = Interval.values();
+
+    private final Market market;
+    private final BarStore store;
+    private final int window;
+    private volatile SymbolBars[] bars = new SymbolBars[0];
+
+    /** Tracks every stock listed so far; indicators cover the last {@code window} updates. */
+    public BarAggregator(Market market, BarStore store, int window) {
+        this.market = market;
+        this.store = store;
+        this.window = window;
+        for (int slot = 0; slot < market.size(); slot++) {
+            track(market.getStockAtSlot(slot));
+        }
+    }
+
+    /** Starts aggregating a stock listed after this aggregator was created. */
+    public synchronized void track(Stock stock) {
+        int slot = stock.getSlot();
+        SymbolBars[] current = bars;
+        if (slot < current.length && current[slot] != null) return;
+        SymbolBars[] next = slot < current.length ? current.clone() : Arrays.copyOf(current, slot + 1);
+        next[slot] = new SymbolBars(stock.getSymbol(), window);
+        bars = next;
+        stock.subscribe(this);
+    }
+
+    @Override
+    public void onPrice(Stock stock, double price) {
+        record(stock, price, 1, market.getClock().nowMillis());
+    }
+
+    /** Folds in a trade or tick; feed ticks without a size count as volume 1. */
+    public void record(Stock stock, double price, long volume, long timeMillis) {
+        SymbolBars state = state(stock);
+        if (state != null) state.update(price, volume, timeMillis);
+    }
+
+    /** The bar still being built, or null if the symbol has had no updates. */
+    public Bar currentBar(String symbol, Interval interval) {
+        SymbolBars state = state(symbol);
+        return state == null ? null : state.current(interval.ordinal());
+    }
+
+    public double sma(String symbol) {
+        SymbolBars state = state(symbol);
+        return state == null ? Double.NaN : state.sma();
+    }
+
+    public double ema(String symbol) {
+        SymbolBars state = state(symbol);
+        return state == null ? Double.NaN : state.ema();
+    }
+
+    public double vwap(String symbol) {
+        SymbolBars state = state(symbol);
+        return state == null ? Double.NaN : state.vwap();
+    }
+
+    /** Completed bars with {@code fromMillis <= start < toMillis}, read from the store. */
+    public List<Bar> history(String symbol, Interval interval, long fromMillis, long toMillis) throws IOException {
+        return store.query(symbol, interval, fromMillis, toMillis);
+    }
+
+    private SymbolBars state(String symbol) {
+        Stock stock = market.getStock(symbol);
+        return stock == null ? null : state(stock);
+    }
+
+    private SymbolBars state(Stock stock) {
+        SymbolBars[] current = bars;
+        return stock.getSlot() < current.length ? current[stock.getSlot()] : null;
+    }
+
+    private final class SymbolBars {
+        private final String symbol;
+        private final long[] start = new long[INTERVALS.length];
+        private final double[] open = new double[INTERVALS.length];
+        private final double[] high = new double[INTERVALS.length];
+        private final double[] low = new double[INTERVALS.length];
+        private final double[] close = new double[INTERVALS.length];
+        private final long[] volume = new long[INTERVALS.length];
+        private final RollingIndicators indicators;
+        private boolean started;
+
+        SymbolBars(String symbol, int window) {
+            this.symbol = symbol;
+            this.indicators = new RollingIndicators(window);
+        }
+
+        synchronized void update(double price, long qty, long timeMillis) {
+            indicators.update(price, qty);
+            for (int i = 0; i < INTERVALS.length; i++) {
+                long bucket = timeMillis - Math.floorMod(timeMillis, INTERVALS[i].getMillis());
+                // Late updates fold into the open bar rather than reopening a closed one.
+                if (!started || bucket > start[i]) {
+                    if (started) emit(i);
+                    start[i] = bucket;
+                    open[i] = high[i] = low[i] = close[i] = price;
+                    volume[i] = qty;
+                } else {
+                    if (price > high[i]) high[i] = price;
+                    if (price < low[i]) low[i] = price;
+                    close[i] = price;
+                    volume[i] += qty;
+                }
+            }
+            started = true;
+        }
+
+        private void emit(int i) {
+            try {
+                store.append(symbol, INTERVALS[i], current(i));
+            } catch (IOException e) {
+                // Runs on a tick thread; losing a bar is better than stopping the feed.
+                System.err.println("Failed to store " + symbol + " bar: " + e.getMessage());
+            }
+        }
+
+        synchronized Bar current(int i) {
+            return started ? new Bar(start[i], open[i], high[i], low[i], close[i], volume[i]) : null;
+        }
+
+        synchronized double sma() {
+            return indicators.sma();
+        }
+
+        synchronized double ema() {
+            return indicators.ema();
+        }
+
+        synchronized double vwap() {
+            return indicators.vwap();
+        }
+    }
+}
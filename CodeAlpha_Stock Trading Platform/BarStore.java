@@ -0,0 +1,156 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only bar files, one per symbol and interval ({@code AAPL.1m.bars}), made of fixed
+ * 48-byte records {@code start, open, high, low, close, volume} in start order. Fixed-width
+ * sorted records let a range query binary-search the file and read just the matching slice.
+ *
+ * <p>Each bar is written as it closes, so a crash loses at most the bars still open. A file
+ * is opened on first use and kept open until {@link #close}, so a bar costs one positional
+ * write rather than an open and close on the tick thread. A write cut short by a crash leaves
+ * a partial record at the end of the file, which is trimmed back to a record boundary when
+ * the file is opened. Files are locked by stripe, so writers on different symbols rarely contend.
+ */
+public class BarStore implements Closeable {
+    private static final int RECORD_BYTES = 48;
+    private static final int READ_RECORDS = 64;
+    private static final int STRIPES = 64;
+
+    /** An open bar file and the end of its last whole record. */
+    private static final class BarFile {
+        final FileChannel channel;
+        long end;
+
+        BarFile(FileChannel channel, long end) {
+            this.channel = channel;
+            this.end = end;
+        }
+    }
+
+    private final File dir;
+    private final Object[] locks = new Object[STRIPES];
+    private final Map<String, BarFile> files = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public BarStore(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        this.dir = dir;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public void append(String symbol, BarAggregator.Interval interval, Bar bar) throws IOException {
+        String name = fileName(symbol, interval);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.putLong(bar.getStartMillis())
+                .putDouble(bar.getOpen()).putDouble(bar.getHigh())
+                .putDouble(bar.getLow()).putDouble(bar.getClose())
+                .putLong(bar.getVolume());
+        record.flip();
+        synchronized (lockOf(name)) {
+            BarFile file = open(name, true);
+            while (record.hasRemaining()) file.channel.write(record, file.end + record.position());
+            file.end += RECORD_BYTES;
+        }
+    }
+
+    /** Bars with {@code fromMillis <= start < toMillis}, oldest first. */
+    public List<Bar> query(String symbol, BarAggregator.Interval interval, long fromMillis, long toMillis)
+            throws IOException {
+        String name = fileName(symbol, interval);
+        List<Bar> result = new ArrayList<>();
+        synchronized (lockOf(name)) {
+            BarFile file = open(name, false);
+            if (file == null) return result;
+            FileChannel channel = file.channel;
+            long count = file.end / RECORD_BYTES;
+            ByteBuffer key = ByteBuffer.allocate(8);
+            long lo = 0, hi = count;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                key.clear();
+                while (key.hasRemaining()) channel.read(key, mid * RECORD_BYTES + key.position());
+                if (key.getLong(0) < fromMillis) lo = mid + 1; else hi = mid;
+            }
+            ByteBuffer chunk = ByteBuffer.allocate(READ_RECORDS * RECORD_BYTES);
+            long position = lo * RECORD_BYTES;
+            while (position < count * RECORD_BYTES) {
+                chunk.clear();
+                chunk.limit((int) Math.min(chunk.capacity(), count * RECORD_BYTES - position));
+                while (chunk.hasRemaining()) channel.read(chunk, position + chunk.position());
+                chunk.flip();
+                while (chunk.hasRemaining()) {
+                    long start = chunk.getLong();
+                    if (start >= toMillis) return result;
+                    result.add(new Bar(start, chunk.getDouble(), chunk.getDouble(), chunk.getDouble(),
+                            chunk.getDouble(), chunk.getLong()));
+                }
+                position += chunk.limit();
+            }
+        }
+        return result;
+    }
+
+    /** Closes every open bar file; the store cannot be used afterwards. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        IOException failure = null;
+        for (int i = 0; i < STRIPES; i++) {
+            synchronized (locks[i]) {
+                for (Map.Entry<String, BarFile> e : files.entrySet()) {
+                    if (lockOf(e.getKey()) != locks[i]) continue;
+                    try {
+                        e.getValue().channel.close();
+                    } catch (IOException ex) {
+                        if (failure == null) failure = ex; else failure.addSuppressed(ex);
+                    }
+                    files.remove(e.getKey());
+                }
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * The open file behind {@code name}, opening it and trimming a torn last record the first
+     * time; null if it does not exist and {@code create} is false. Called under the name's lock.
+     */
+    private BarFile open(String name, boolean create) throws IOException {
+        if (closed) throw new IOException("Bar store is closed");
+        BarFile file = files.get(name);
+        if (file != null) return file;
+        File path = new File(dir, name);
+        if (!create && !path.exists()) return null;
+        FileChannel channel = FileChannel.open(path.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            long end = size - size % RECORD_BYTES;
+            if (end != size) channel.truncate(end);
+            file = new BarFile(channel, end);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        files.put(name, file);
+        return file;
+    }
+
+    private Object lockOf(String name) {
+        return locks[(name.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private static String fileName(String symbol, BarAggregator.Interval interval) {
+        // Keep odd tickers from escaping the directory or clashing with the suffix.
+        return symbol.replaceAll("[^A-Za-z0-9_-]", "_") + "." + interval.getLabel() + ".bars";
+    }
+}
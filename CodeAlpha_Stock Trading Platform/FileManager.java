@@ -1,14 +1,161 @@
 import java.io.*;
-import java.util.Map;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
+/**
+ * Persists accounts under a directory per account: a snapshot ({@value #SNAPSHOT_FILE})
+ * written to a temp file and renamed into place, plus a {@link TradeLog} of the fills
+ * since. Loading reads the snapshot and replays the log records it does not cover.
+ *
+ * <p>The snapshot holds the positions as well as the history, so loading restores them
+ * directly and copies the history into the ledger without replaying it trade by trade.
+ */
 public class FileManager {
+    public static final String SNAPSHOT_FILE = "account.snap";
+    private static final int MAGIC = 0x53545031; // "STP1"
 
-    public static void savePortfolio(Portfolio portfolio) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new FileWriter("portfolio.txt"));
-        for (Map.Entry<String, Integer> entry : portfolio.getHoldings().entrySet()) {
-            writer.write(entry.getKey() + "," + entry.getValue());
-            writer.newLine();
+    /**
+     * Rebuilds a freshly created user's cash, holdings and transactions from {@code dir},
+     * then attaches a trade log there so every later fill is persisted as it happens.
+     * A directory with no files yet keeps the user's opening balance.
+     */
+    public static void loadPortfolio(User user, File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        Portfolio portfolio = user.getPortfolio();
+        synchronized (user) {
+            if (portfolio.getTransactions().size() != 0 || portfolio.getTradeLog() != null) {
+                throw new IllegalStateException("Account " + user.getName() + " is already loaded");
+            }
+            double[] cash = { user.getSettledCash() };
+            long snapshotSeq = readSnapshot(new File(dir, SNAPSHOT_FILE), portfolio, cash);
+            long[] lastSeq = { snapshotSeq };
+            long valid = TradeLog.replay(new File(dir, TradeLog.FILE), (seq, symbol, qty, price, nanos) -> {
+                // A crash between writing a snapshot and emptying the log leaves covered records behind.
+                if (seq <= snapshotSeq) return;
+                int symbolId = SymbolRegistry.idOf(symbol);
+                if (qty > 0) {
+                    portfolio.buyStock(symbolId, qty, price, nanos);
+                } else {
+                    portfolio.sellStock(symbolId, -qty, price, nanos);
+                }
+                cash[0] -= qty * price;
+                lastSeq[0] = seq;
+            });
+            user.restoreCash(cash[0]);
+            portfolio.setTradeLog(TradeLog.open(new File(dir, TradeLog.FILE), valid, lastSeq[0] + 1));
         }
-        writer.close();
+    }
+
+    /**
+     * Writes a snapshot of the user's settled cash, positions and full history, then empties
+     * the trade log. Must run on the account's own thread, and the account must be loaded.
+     */
+    public static void savePortfolio(User user, File dir) throws IOException {
+        Portfolio portfolio = user.getPortfolio();
+        synchronized (user) {
+            TradeLog log = portfolio.getTradeLog();
+            if (log == null) throw new IllegalStateException("Account " + user.getName() + " was not loaded");
+            File tmp = new File(dir, SNAPSHOT_FILE + ".tmp");
+            try (FileOutputStream file = new FileOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                writeSnapshot(out, user, log.lastSeq());
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(tmp.toPath(), new File(dir, SNAPSHOT_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.reset();
+        }
+    }
+
+    // Layout: magic, lastSeq, name, cash, positions, then the ledger as fixed 24-byte records.
+    private static void writeSnapshot(DataOutputStream out, User user, long lastSeq) throws IOException {
+        Portfolio portfolio = user.getPortfolio();
+        out.writeInt(MAGIC);
+        out.writeLong(lastSeq);
+        writeString(out, user.getName());
+        out.writeDouble(user.getSettledCash());
+        List<Position> positions = portfolio.getAllPositions();
+        out.writeInt(positions.size());
+        for (Position position : positions) {
+            writeString(out, position.getSymbol());
+            out.writeInt(position.getQuantity());
+            out.writeDouble(position.getCostBasis());
+            out.writeDouble(position.getLastPrice());
+            out.writeDouble(position.getRealizedPnl());
+        }
+        TransactionLedger ledger = portfolio.getTransactions();
+        int count = ledger.size();
+        // Registry ids are per process, so the snapshot carries its own symbol table.
+        int[] local = new int[SymbolRegistry.size()];
+        int symbols = 0;
+        TransactionLedger.Cursor scan = ledger.cursor(0, count);
+        while (scan.next()) {
+            if (local[scan.symbolId()] == 0) local[scan.symbolId()] = ++symbols;
+        }
+        out.writeInt(symbols);
+        for (int id = 0; id < local.length; id++) {
+            if (local[id] != 0) writeString(out, SymbolRegistry.nameOf(id));
+        }
+        // Table order follows registry id order, so renumber to match what was written.
+        int next = 0;
+        for (int id = 0; id < local.length; id++) {
+            if (local[id] != 0) local[id] = next++;
+        }
+        out.writeInt(count);
+        TransactionLedger.Cursor cursor = ledger.cursor(0, count);
+        while (cursor.next()) {
+            out.writeLong(cursor.epochNanos());
+            out.writeLong(cursor.priceTicks());
+            out.writeInt(local[cursor.symbolId()]);
+            out.writeInt(cursor.quantity());
+        }
+    }
+
+    // Returns the last log sequence number the snapshot covers, or -1 without a snapshot.
+    private static long readSnapshot(File file, Portfolio portfolio, double[] cash) throws IOException {
+        if (!file.exists()) return -1;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC) throw new IOException("Not an account snapshot: " + file);
+            long lastSeq = in.getLong();
+            readString(in);
+            cash[0] = in.getDouble();
+            int positions = in.getInt();
+            for (int i = 0; i < positions; i++) {
+                String symbol = readString(in);
+                portfolio.restorePosition(new Position(symbol, in.getInt(), in.getDouble(), in.getDouble(), in.getDouble()));
+            }
+            int[] symbolIds = new int[in.getInt()];
+            for (int i = 0; i < symbolIds.length; i++) {
+                symbolIds[i] = SymbolRegistry.idOf(readString(in));
+            }
+            TransactionLedger ledger = portfolio.getTransactions();
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                long nanos = in.getLong();
+                long priceTicks = in.getLong();
+                int symbolId = symbolIds[in.getInt()];
+                ledger.append(symbolId, in.getInt(), priceTicks / 100.0, nanos);
+            }
+            return lastSeq;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 }
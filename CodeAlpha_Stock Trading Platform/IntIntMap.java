@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from non-negative int keys (symbol ids) to int values, with linear
+ * probing and no boxing, so a lookup or update allocates nothing. Keys are never removed;
+ * callers store a zero instead. Not thread-safe.
+ */
+public class IntIntMap {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntMap() {
+        this(4);
+    }
+
+    public IntIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public int get(int key, int missing) {
+        int i = indexOf(key);
+        return keys[i] == key ? values[i] : missing;
+    }
+
+    public void put(int key, int value) {
+        int i = indexOf(key);
+        if (keys[i] != key) {
+            if (insert(i, key)) i = indexOf(key);
+        }
+        values[i] = value;
+    }
+
+    /** Adds {@code delta} to the value for {@code key} (0 if absent) and returns the sum. */
+    public int addTo(int key, int delta) {
+        int i = indexOf(key);
+        if (keys[i] != key) {
+            if (insert(i, key)) i = indexOf(key);
+        }
+        return values[i] += delta;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Slot holding key, or the empty slot where it would go.
+    private int indexOf(int key) {
+        if (key < 0) throw new IllegalArgumentException("Negative key " + key);
+        int mask = keys.length - 1;
+        int h = key * 0x9E3779B9;
+        int i = (h ^ h >>> 16) & mask;
+        while (keys[i] != key && keys[i] != EMPTY) i = (i + 1) & mask;
+        return i;
+    }
+
+    // Claims the empty slot i for key; returns true if the table was rehashed, moving it.
+    private boolean insert(int i, int key) {
+        keys[i] = key;
+        values[i] = 0;
+        if (++size * 4 <= keys.length * 3) return false;
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int k = indexOf(oldKeys[j]);
+                keys[k] = oldKeys[j];
+                values[k] = oldValues[j];
+            }
+        }
+        return true;
+    }
+}
@@ -1,9 +1,79 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 
 public class Main {
+    private static final File DATA_DIR = new File("accounts");
+    // Account names become file names, so nothing that could leave DATA_DIR is allowed.
+    private static final Pattern ACCOUNT_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private static File accountFile(String name) {
+        if (!ACCOUNT_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Account names may only use letters, digits, '_' and '-'");
+        }
+        return new File(DATA_DIR, name);
+    }
+
+    // New names start with $10000; known ones are restored from their saved files.
+    private static int openAccount(AccountEngine engine, String name) {
+        File file = accountFile(name);
+        int id = engine.openAccount(name, 10000).join();
+        engine.submit(id, user -> {
+            try {
+                FileManager.loadPortfolio(user, file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }).join();
+        return id;
+    }
+
+    // Runs a grid of SMA crossover settings over a tick file, one run per thread.
+    private static void backtest(File tickFile, int threads) throws IOException {
+        TickFile ticks = TickFile.open(tickFile);
+        System.out.println("Loaded " + ticks.getTickCount() + " ticks for " + ticks.getSymbolCount() + " symbols");
+        Map<String, Strategy> strategies = new LinkedHashMap<>();
+        for (int fast : new int[] { 5, 10, 20 }) {
+            for (int slow : new int[] { 50, 100, 200 }) {
+                Strategy strategy = new SmaCrossStrategy(fast, slow, 10);
+                strategies.put(strategy.toString(), strategy);
+            }
+        }
+        for (BacktestResult result : new Backtester(ticks, 100_000).runAll(strategies, threads)) {
+            System.out.println(result);
+        }
+    }
+
     public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && args[0].equals("--backtest")) {
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            backtest(new File(args[1]), threads);
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--convert-ticks")) {
+            TickFile.convert(new File(args[1]), new File(args[2]));
+            return;
+        }
         Market market = new Market();
-        User user = new User("Alice", 10000);
+        TickEngine ticks = new TickEngine(market);
+        if (args.length > 0) {
+            System.out.println("Replayed " + ticks.replay(new File(args[0])) + " ticks");
+        }
+        new MarketMaker(market, 0.001, 1_000_000);
+        BarStore barStore = new BarStore(new File("bars"));
+        BarAggregator bars = new BarAggregator(market, barStore, 20);
+        ticks.startRandomWalk(1, 500, System.nanoTime());
+        AccountEngine engine = new AccountEngine(market);
+        Map<String, Integer> accounts = new HashMap<>();
+        int account = openAccount(engine, "Alice");
+        accounts.put("Alice", account);
 
         Scanner sc = new Scanner(System.in);
 
@@ -13,44 +83,124 @@ public class Main {
             System.out.println("3. Sell Stock");
             System.out.println("4. View Portfolio");
             System.out.println("5. Save Portfolio");
+            System.out.println("6. Place Limit Order");
+            System.out.println("7. Cancel Order");
+            System.out.println("8. Transaction History");
+            System.out.println("9. Switch Account");
+            System.out.println("10. Price History");
             System.out.println("0. Exit");
 
             int choice = sc.nextInt();
 
             if (choice == 0) break;
 
-            switch (choice) {
-                case 1:
-                    market.displayMarket();
-                    break;
-
-                case 2:
-                    System.out.print("Enter stock symbol: ");
-                    String buySym = sc.next();
-                    System.out.print("Quantity: ");
-                    int buyQty = sc.nextInt();
-                    user.buy(market.getStock(buySym), buyQty);
-                    break;
-
-                case 3:
-                    System.out.print("Enter stock symbol: ");
-                    String sellSym = sc.next();
-                    System.out.print("Quantity: ");
-                    int sellQty = sc.nextInt();
-                    user.sell(market.getStock(sellSym), sellQty);
-                    break;
-
-                case 4:
-                    user.getPortfolio().displayPortfolio(market);
-                    System.out.println("Balance: $" + user.getBalance());
-                    break;
-
-                case 5:
-                    FileManager.savePortfolio(user.getPortfolio());
-                    System.out.println("Portfolio saved!");
-                    break;
+            try {
+                switch (choice) {
+                    case 1:
+                        market.displayMarket();
+                        break;
+
+                    case 2:
+                        System.out.print("Enter stock symbol: ");
+                        String buySym = sc.next();
+                        System.out.print("Quantity: ");
+                        int buyQty = sc.nextInt();
+                        engine.buy(account, buySym, buyQty).join();
+                        break;
+
+                    case 3:
+                        System.out.print("Enter stock symbol: ");
+                        String sellSym = sc.next();
+                        System.out.print("Quantity: ");
+                        int sellQty = sc.nextInt();
+                        engine.sell(account, sellSym, sellQty).join();
+                        break;
+
+                    case 4:
+                        engine.submit(account, user -> {
+                            user.getPortfolio().displayPortfolio(market);
+                            System.out.println("Balance: $" + user.getBalance());
+                            return null;
+                        }).join();
+                        break;
+
+                    case 5:
+                        engine.submit(account, user -> {
+                            try {
+                                FileManager.savePortfolio(user, accountFile(user.getName()));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            return null;
+                        }).join();
+                        System.out.println("Portfolio saved!");
+                        break;
+
+                    case 6:
+                        System.out.print("Enter stock symbol: ");
+                        String limitSym = sc.next();
+                        System.out.print("Side (B/S): ");
+                        boolean limitBuy = sc.next().equalsIgnoreCase("B");
+                        System.out.print("Quantity: ");
+                        int limitQty = sc.nextInt();
+                        System.out.print("Limit price: ");
+                        double limitPrice = sc.nextDouble();
+                        long orderId = engine.placeLimitOrder(account, limitSym, limitBuy, limitQty, limitPrice).join();
+                        System.out.println("Order id: " + orderId);
+                        break;
+
+                    case 7:
+                        System.out.print("Enter stock symbol: ");
+                        String cancelSym = sc.next();
+                        System.out.print("Order id: ");
+                        long cancelId = sc.nextLong();
+                        boolean cancelled = engine.cancelOrder(account, cancelSym, cancelId).join();
+                        System.out.println(cancelled ? "Order cancelled." : "Order not open.");
+                        break;
+
+                    case 8:
+                        engine.submit(account, user -> {
+                            TransactionLedger.Cursor history = user.getPortfolio().getTransactions().cursor();
+                            while (history.next()) {
+                                System.out.println(history.toTransaction());
+                            }
+                            return null;
+                        }).join();
+                        break;
+
+                    case 9:
+                        System.out.print("Account name: ");
+                        String name = sc.next();
+                        Integer existing = accounts.get(name);
+                        if (existing == null) {
+                            existing = openAccount(engine, name);
+                            accounts.put(name, existing);
+                            System.out.println("Opened account for " + name);
+                        }
+                        account = existing;
+                        break;
+
+                    case 10:
+                        System.out.print("Enter stock symbol: ");
+                        String histSym = sc.next();
+                        long now = market.getClock().nowMillis();
+                        for (Bar bar : bars.history(histSym, BarAggregator.Interval.MINUTE, now - 3_600_000L, now)) {
+                            System.out.println(bar);
+                        }
+                        System.out.println("Now: " + bars.currentBar(histSym, BarAggregator.Interval.MINUTE));
+                        System.out.printf("SMA %.2f | EMA %.2f | VWAP %.2f%n",
+                                bars.sma(histSym), bars.ema(histSym), bars.vwap(histSym));
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage() + "!");
+            } catch (CompletionException e) {
+                System.out.println(e.getCause().getMessage() + "!");
             }
         }
+        engine.close();
+        ticks.stop();
+        barStore.close();
         sc.close();
     }
 }
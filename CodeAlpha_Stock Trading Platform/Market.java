@@ -1,24 +1,101 @@
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class Market {
-    private Map<String, Stock> stocks = new HashMap<>();
+    // Dense table indexed by Stock.getSlot(); replaced wholesale when a symbol is listed.
+    private volatile Stock[] table = new Stock[0];
+    // Indexed by symbol id, with nulls for symbols this market does not list.
+    private volatile Stock[] bySymbolId = new Stock[0];
+    private final MarketClock clock;
+    private final List<Consumer<Stock>> listingListeners = new CopyOnWriteArrayList<>();
 
     public Market() {
-        stocks.put("AAPL", new Stock("AAPL", 180));
-        stocks.put("GOOG", new Stock("GOOG", 2800));
-        stocks.put("TSLA", new Stock("TSLA", 750));
+        this(MarketClock.SYSTEM);
+        addStock("AAPL", 180);
+        addStock("GOOG", 2800);
+        addStock("TSLA", 750);
+    }
+
+    /** An empty market on the given clock; a backtest lists the symbols from its tick data. */
+    public Market(MarketClock clock) {
+        this.clock = clock;
+    }
+
+    public MarketClock getClock() {
+        return clock;
+    }
+
+    /** Lists a new symbol, or returns the existing stock if it is already listed. */
+    public synchronized Stock addStock(String symbol, double price) {
+        Stock existing = getStock(symbol);
+        if (existing != null) return existing;
+        Stock stock = new Stock(symbol, table.length, price);
+        Stock[] byId = Arrays.copyOf(bySymbolId, Math.max(bySymbolId.length, stock.getSymbolId() + 1));
+        byId[stock.getSymbolId()] = stock;
+        bySymbolId = byId;
+        Stock[] next = Arrays.copyOf(table, table.length + 1);
+        next[stock.getSlot()] = stock;
+        table = next;
+        for (Consumer<Stock> listener : listingListeners) {
+            listener.accept(stock);
+        }
+        return stock;
+    }
+
+    /** Calls {@code listener} with each stock listed from now on, on the listing thread. */
+    public void addListingListener(Consumer<Stock> listener) {
+        listingListeners.add(listener);
     }
 
     public void displayMarket() {
         System.out.println("\n--- Market Prices ---");
-        for (Stock stock : stocks.values()) {
-            System.out.println(stock.getSymbol() + " : $" + stock.getPrice());
+        for (Stock stock : table) {
+            System.out.printf("%s : $%.2f%n", stock.getSymbol(), stock.getPrice());
         }
     }
 
     public Stock getStock(String symbol) {
-        return stocks.get(symbol);
+        int symbolId = SymbolRegistry.lookup(symbol);
+        return symbolId < 0 ? null : getStockBySymbolId(symbolId);
+    }
+
+    /** The listed stock with this {@link SymbolRegistry} id, or null if this market does not list it. */
+    public Stock getStockBySymbolId(int symbolId) {
+        Stock[] byId = bySymbolId;
+        return symbolId < byId.length ? byId[symbolId] : null;
     }
-}
 
+    /**
+     * The stock in listing slot {@code slot}, {@code 0 <= slot < size()}. Slots are positions in
+     * this market, not {@link SymbolRegistry} ids; see {@link #getStockBySymbolId}.
+     */
+    public Stock getStockAtSlot(int slot) {
+        return table[slot];
+    }
+
+    public int size() {
+        return table.length;
+    }
+
+    public OrderBook getOrderBook(String symbol) {
+        Stock stock = getStock(symbol);
+        return stock == null ? null : stock.getOrderBook();
+    }
+
+    /** Applies a tick by slot, skipping the symbol lookup; used by the tick engine. */
+    public void updatePrice(int slot, double price) {
+        table[slot].setPrice(price);
+    }
+
+    /** Copies the current prices, indexed by slot, without taking any lock. */
+    public double[] snapshotPrices() {
+        Stock[] current = table;
+        double[] prices = new double[current.length];
+        for (int i = 0; i < current.length; i++) {
+            prices[i] = current[i].getPrice();
+        }
+        return prices;
+    }
+}
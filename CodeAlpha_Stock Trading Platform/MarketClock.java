@@ -0,0 +1,15 @@
+import java.time.Instant;
+
+/** Source of "now" for trades and bars; a backtest swaps in a {@link SimulatedClock}. */
+public interface MarketClock {
+    MarketClock SYSTEM = () -> {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    };
+
+    long nowNanos();
+
+    default long nowMillis() {
+        return Math.floorDiv(nowNanos(), 1_000_000L);
+    }
+}
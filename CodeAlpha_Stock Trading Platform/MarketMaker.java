@@ -0,0 +1,69 @@
+import java.util.Arrays;
+
+/**
+ * House liquidity for the CLI: keeps one bid and one ask around the feed price of each
+ * stock it follows, re-quoting on every tick. It has unlimited cash and shares.
+ *
+ * Quotes live in one small object per symbol, indexed by symbol id; re-quoting a symbol
+ * locks only that symbol's quote, so tick workers on different symbols never contend.
+ * Symbols listed on the market after the maker was created are quoted as they appear.
+ */
+public class MarketMaker implements PriceListener, OrderOwner {
+    private final double halfSpread;
+    private final int size;
+    private volatile Quote[] quotes = new Quote[SymbolRegistry.size()];
+
+    public MarketMaker(Market market, double halfSpread, int size) {
+        this.halfSpread = halfSpread;
+        this.size = size;
+        market.addListingListener(this::quote);
+        for (int slot = 0; slot < market.size(); slot++) {
+            quote(market.getStockAtSlot(slot));
+        }
+    }
+
+    /** Starts quoting a stock; does nothing if it is already quoted. */
+    public void quote(Stock stock) {
+        int symbolId = stock.getSymbolId();
+        synchronized (this) {
+            Quote[] current = quotes;
+            if (symbolId < current.length && current[symbolId] != null) return;
+            Quote[] next = symbolId < current.length
+                    ? current.clone()
+                    : Arrays.copyOf(current, Math.max(symbolId + 1, SymbolRegistry.size()));
+            next[symbolId] = new Quote();
+            quotes = next;
+        }
+        stock.subscribe(this);
+        onPrice(stock, stock.getPrice());
+    }
+
+    @Override
+    public void onPrice(Stock stock, double price) {
+        Quote[] current = quotes;
+        int symbolId = stock.getSymbolId();
+        Quote quote = symbolId < current.length ? current[symbolId] : null;
+        if (quote == null) return;
+        OrderBook book = stock.getOrderBook();
+        synchronized (quote) {
+            book.cancel(quote.bidId);
+            book.cancel(quote.askId);
+            quote.bidId = book.limit(this, true, size, Math.max(0.01, price * (1 - halfSpread)));
+            quote.askId = book.limit(this, false, size, price * (1 + halfSpread));
+        }
+    }
+
+    @Override
+    public void onFill(long orderId, int symbolId, boolean buy, int qty, double fillPrice, double limitPrice) {
+    }
+
+    @Override
+    public void onCancel(long orderId, int symbolId, boolean buy, int qty, double limitPrice) {
+    }
+
+    // The maker's resting orders on one symbol.
+    private static final class Quote {
+        long bidId;
+        long askId;
+    }
+}
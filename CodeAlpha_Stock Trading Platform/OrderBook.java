@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/**
+ * Limit order book for one symbol with price-time priority. Prices are kept as whole cents.
+ * Orders live in parallel primitive arrays recycled through a free list and are chained
+ * FIFO per price level, so matching and resting an order allocate nothing once the
+ * arrays have grown to the book's working size.
+ */
+public class OrderBook {
+    private static final int NONE = -1;
+
+    private final String symbol;
+    private final int symbolId;
+
+    // Order pool; an order id is (generation << 32 | slot) so stale ids never hit a reused slot.
+    private long[] orderPrice = new long[64];
+    private int[] orderQty = new int[64];
+    private int[] orderGen = new int[64];
+    private int[] prev = new int[64];
+    private int[] next = new int[64];
+    private boolean[] orderBuy = new boolean[64];
+    private OrderOwner[] owners = new OrderOwner[64];
+    private int used;
+    private int freeHead = NONE;
+
+    private final Side bids = new Side(true);
+    private final Side asks = new Side(false);
+
+    public OrderBook(String symbol) {
+        this.symbol = symbol;
+        this.symbolId = SymbolRegistry.idOf(symbol);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /** Places a good-till-cancelled limit order; whatever does not match rests in the book. */
+    public synchronized long limit(OrderOwner owner, boolean buy, int qty, double price) {
+        long ticks = toTicks(price);
+        int slot = allocate(owner, buy, qty, ticks);
+        long id = idOf(slot);
+        int left = match(id, owner, buy, qty, ticks, price);
+        if (left == 0) {
+            release(slot);
+        } else {
+            orderQty[slot] = left;
+            (buy ? bids : asks).append(slot, ticks);
+        }
+        return id;
+    }
+
+    /** Fills what it can at {@code price} or better and cancels the rest. */
+    public synchronized long immediateOrCancel(OrderOwner owner, boolean buy, int qty, double price) {
+        return sweep(owner, buy, qty, toTicks(price), price);
+    }
+
+    /**
+     * Fills against the best prices available, however far away, and cancels the rest.
+     * {@code reservedPrice} is the per-share price the owner set aside for the order; the
+     * callbacks report it as the order's limit so the owner can settle its reservation.
+     */
+    public synchronized long market(OrderOwner owner, boolean buy, int qty, double reservedPrice) {
+        return sweep(owner, buy, qty, buy ? Long.MAX_VALUE : Long.MIN_VALUE, reservedPrice);
+    }
+
+    private long sweep(OrderOwner owner, boolean buy, int qty, long ticks, double price) {
+        int slot = allocate(owner, buy, qty, ticks);
+        long id = idOf(slot);
+        release(slot);
+        int left = match(id, owner, buy, qty, ticks, price);
+        if (left > 0) owner.onCancel(id, symbolId, buy, left, price);
+        return id;
+    }
+
+    /** Cancels a resting order. Returns false if it already filled or was cancelled. */
+    public synchronized boolean cancel(long orderId) {
+        int slot = (int) orderId;
+        if (slot < 0 || slot >= used || orderGen[slot] != (int) (orderId >>> 32) || owners[slot] == null) {
+            return false;
+        }
+        boolean buy = orderBuy[slot];
+        long ticks = orderPrice[slot];
+        int qty = orderQty[slot];
+        OrderOwner owner = owners[slot];
+        (buy ? bids : asks).unlink(slot, ticks);
+        release(slot);
+        owner.onCancel(orderId, symbolId, buy, qty, fromTicks(ticks));
+        return true;
+    }
+
+    public synchronized double bestBid() {
+        return bids.count == 0 ? Double.NaN : fromTicks(bids.bestPrice());
+    }
+
+    public synchronized double bestAsk() {
+        return asks.count == 0 ? Double.NaN : fromTicks(asks.bestPrice());
+    }
+
+    /** Total resting quantity at the given price on one side. */
+    public synchronized int depthAt(boolean buy, double price) {
+        Side side = buy ? bids : asks;
+        int level = side.find(buy ? toTicks(price) : -toTicks(price));
+        if (level < 0) return 0;
+        int total = 0;
+        for (int o = side.head[level]; o != NONE; o = next[o]) total += orderQty[o];
+        return total;
+    }
+
+    private int match(long takerId, OrderOwner taker, boolean buy, int qty, long limit, double limitPrice) {
+        Side book = buy ? asks : bids;
+        while (qty > 0 && book.count > 0) {
+            int level = book.count - 1;
+            long price = book.bestPrice();
+            if (buy ? price > limit : price < limit) break;
+            double fillPrice = fromTicks(price);
+            int maker = book.head[level];
+            while (maker != NONE && qty > 0) {
+                int n = Math.min(qty, orderQty[maker]);
+                qty -= n;
+                orderQty[maker] -= n;
+                int following = next[maker];
+                OrderOwner makerOwner = owners[maker];
+                long makerId = idOf(maker);
+                if (orderQty[maker] == 0) {
+                    book.unlink(maker, price);
+                    release(maker);
+                }
+                makerOwner.onFill(makerId, symbolId, !buy, n, fillPrice, fillPrice);
+                taker.onFill(takerId, symbolId, buy, n, fillPrice, limitPrice);
+                maker = following;
+            }
+        }
+        return qty;
+    }
+
+    private int allocate(OrderOwner owner, boolean buy, int qty, long ticks) {
+        if (qty <= 0) throw new IllegalArgumentException("Quantity must be positive: " + qty);
+        int slot;
+        if (freeHead != NONE) {
+            slot = freeHead;
+            freeHead = next[slot];
+        } else {
+            if (used == owners.length) grow();
+            slot = used++;
+        }
+        orderGen[slot]++;
+        owners[slot] = owner;
+        orderBuy[slot] = buy;
+        orderQty[slot] = qty;
+        orderPrice[slot] = ticks;
+        prev[slot] = NONE;
+        next[slot] = NONE;
+        return slot;
+    }
+
+    private void release(int slot) {
+        owners[slot] = null;
+        next[slot] = freeHead;
+        freeHead = slot;
+    }
+
+    private void grow() {
+        int size = owners.length * 2;
+        orderPrice = Arrays.copyOf(orderPrice, size);
+        orderQty = Arrays.copyOf(orderQty, size);
+        orderGen = Arrays.copyOf(orderGen, size);
+        prev = Arrays.copyOf(prev, size);
+        next = Arrays.copyOf(next, size);
+        orderBuy = Arrays.copyOf(orderBuy, size);
+        owners = Arrays.copyOf(owners, size);
+    }
+
+    private long idOf(int slot) {
+        return (long) orderGen[slot] << 32 | slot;
+    }
+
+    private static long toTicks(double price) {
+        return Math.round(price * 100);
+    }
+
+    private static double fromTicks(long ticks) {
+        return ticks / 100.0;
+    }
+
+    /**
+     * Price levels of one side in a sorted array. Keys are the price for bids and the negated
+     * price for asks, sorted ascending, so the best level of either side is always the last
+     * one and taking it out is O(1).
+     */
+    private final class Side {
+        private final boolean bids;
+        private long[] key = new long[16];
+        private int[] head = new int[16];
+        private int[] tail = new int[16];
+        private int count;
+
+        Side(boolean bids) {
+            this.bids = bids;
+        }
+
+        long bestPrice() {
+            long k = key[count - 1];
+            return bids ? k : -k;
+        }
+
+        int find(long k) {
+            int level = Arrays.binarySearch(key, 0, count, k);
+            return level >= 0 ? level : -1;
+        }
+
+        void append(int slot, long ticks) {
+            long k = bids ? ticks : -ticks;
+            int level = Arrays.binarySearch(key, 0, count, k);
+            if (level < 0) {
+                level = -level - 1;
+                if (count == key.length) {
+                    key = Arrays.copyOf(key, count * 2);
+                    head = Arrays.copyOf(head, count * 2);
+                    tail = Arrays.copyOf(tail, count * 2);
+                }
+                // New levels usually land near the top of the book, i.e. near the end of the array.
+                System.arraycopy(key, level, key, level + 1, count - level);
+                System.arraycopy(head, level, head, level + 1, count - level);
+                System.arraycopy(tail, level, tail, level + 1, count - level);
+                key[level] = k;
+                head[level] = slot;
+                tail[level] = slot;
+                count++;
+                return;
+            }
+            prev[slot] = tail[level];
+            next[tail[level]] = slot;
+            tail[level] = slot;
+        }
+
+        void unlink(int slot, long ticks) {
+            int level = find(bids ? ticks : -ticks);
+            int p = prev[slot];
+            int n = next[slot];
+            if (p == NONE) head[level] = n; else next[p] = n;
+            if (n == NONE) tail[level] = p; else prev[n] = p;
+            if (head[level] == NONE) {
+                System.arraycopy(key, level + 1, key, level, count - level - 1);
+                System.arraycopy(head, level + 1, head, level, count - level - 1);
+                System.arraycopy(tail, level + 1, tail, level, count - level - 1);
+                count--;
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Receives the outcome of orders placed on an {@link OrderBook}. Callbacks run on the
+ * thread that triggered the match while the book is locked, so they must not call back
+ * into the same book. Symbols are passed as {@link SymbolRegistry} ids.
+ */
+public interface OrderOwner {
+    /**
+     * Part or all of an order traded; {@code limitPrice} is the order's own limit, or for a
+     * market order the price its owner reserved at.
+     */
+    void onFill(long orderId, int symbolId, boolean buy, int qty, double fillPrice, double limitPrice);
+
+    /** The unfilled rest of an order was cancelled, or expired because it was immediate-or-cancel. */
+    void onCancel(long orderId, int symbolId, boolean buy, int qty, double limitPrice);
+}
@@ -1,40 +1,284 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
-public class Portfolio {
-    private Map<String, Integer> holdings = new HashMap<>();
-    private List<Transaction> transactions = new ArrayList<>();
+/**
+ * Holdings, trade history and a running valuation. Totals are adjusted on each fill and,
+ * when the portfolio is attached to a {@link Market}, on each tick of a symbol it holds:
+ * the portfolio subscribes to a stock while it has a position in it, so a tick only
+ * touches the portfolios that hold that symbol. Closing a position unsubscribes on the
+ * symbol's next tick rather than at once, so a round trip between two ticks does not
+ * copy the stock's listener array twice.
+ *
+ * Each symbol ever held gets a row in parallel primitive arrays, found by its
+ * {@link SymbolRegistry} id, so fills and ticks allocate nothing and an account costs a few
+ * dozen bytes per symbol. Symbol strings are only used by the String overloads and snapshots.
+ */
+public class Portfolio implements PriceListener {
+    private final IntIntMap rows = new IntIntMap();
+    private int rowCount;
+    private int[] symbolIds = new int[4];
+    private String[] symbols = new String[4];
+    private int[] quantities = new int[4];
+    private double[] costBases = new double[4];
+    private double[] lastPrices = new double[4];
+    private double[] realizedPnls = new double[4];
+    private boolean[] subscribed = new boolean[4];
+    private TransactionLedger transactions = new TransactionLedger();
+    private final Market market;
+    private double marketValue;
+    private double costBasis;
+    private double realizedPnl;
+    private TradeLog tradeLog;
+
+    public Portfolio() {
+        this(null);
+    }
+
+    public Portfolio(Market market) {
+        this.market = market;
+    }
 
     public void buyStock(String symbol, int qty, double price) {
-        holdings.put(symbol, holdings.getOrDefault(symbol, 0) + qty);
-        transactions.add(new Transaction(symbol, qty, price));
+        buyStock(SymbolRegistry.idOf(symbol), qty, price, clock().nowNanos());
     }
 
     public void sellStock(String symbol, int qty, double price) {
-        holdings.put(symbol, holdings.get(symbol) - qty);
-        transactions.add(new Transaction(symbol, -qty, price));
+        sellStock(SymbolRegistry.idOf(symbol), qty, price, clock().nowNanos());
+    }
+
+    public void buyStock(int symbolId, int qty, double price) {
+        buyStock(symbolId, qty, price, clock().nowNanos());
+    }
+
+    public void sellStock(int symbolId, int qty, double price) {
+        sellStock(symbolId, qty, price, clock().nowNanos());
+    }
+
+    // Trades are stamped with the market's time, which is simulated during a backtest.
+    private MarketClock clock() {
+        return market != null ? market.getClock() : MarketClock.SYSTEM;
+    }
+
+    synchronized void buyStock(int symbolId, int qty, double price, long epochNanos) {
+        if (qty <= 0) throw new IllegalArgumentException("Cannot buy " + qty + " " + SymbolRegistry.nameOf(symbolId));
+        log(symbolId, qty, price, epochNanos);
+        transactions.append(symbolId, qty, price, epochNanos);
+        int row = rowOf(symbolId);
+        int held = quantities[row];
+        double before = held * lastPrices[row];
+        costBases[row] += qty * price;
+        costBasis += qty * price;
+        quantities[row] = held + qty;
+        lastPrices[row] = price;
+        marketValue += quantities[row] * price - before;
+        if (held == 0) watch(row);
+    }
+
+    synchronized void sellStock(int symbolId, int qty, double price, long epochNanos) {
+        int row = rows.get(symbolId, -1);
+        int held = row < 0 ? 0 : quantities[row];
+        if (qty <= 0 || qty > held) {
+            throw new IllegalArgumentException("Cannot sell " + qty + " " + SymbolRegistry.nameOf(symbolId)
+                    + ", holding " + held);
+        }
+        log(symbolId, -qty, price, epochNanos);
+        transactions.append(symbolId, -qty, price, epochNanos);
+        double before = held * lastPrices[row];
+        double avg = costBases[row] / held;
+        double cost = held == qty ? 0 : costBases[row] - qty * avg;
+        double pnl = qty * (price - avg);
+        costBasis += cost - costBases[row];
+        costBases[row] = cost;
+        realizedPnls[row] += pnl;
+        realizedPnl += pnl;
+        quantities[row] = held - qty;
+        lastPrices[row] = price;
+        marketValue += quantities[row] * price - before;
+    }
+
+    // Row for a symbol id, adding an empty one the first time the symbol is traded.
+    private int rowOf(int symbolId) {
+        int row = rows.get(symbolId, -1);
+        if (row >= 0) return row;
+        if (rowCount == symbolIds.length) {
+            int capacity = rowCount * 2;
+            symbolIds = Arrays.copyOf(symbolIds, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            costBases = Arrays.copyOf(costBases, capacity);
+            lastPrices = Arrays.copyOf(lastPrices, capacity);
+            realizedPnls = Arrays.copyOf(realizedPnls, capacity);
+            subscribed = Arrays.copyOf(subscribed, capacity);
+        }
+        row = rowCount++;
+        symbolIds[row] = symbolId;
+        symbols[row] = SymbolRegistry.nameOf(symbolId);
+        rows.put(symbolId, row);
+        return row;
+    }
+
+    /** Reinstates a saved position as is; only valid while restoring a fresh portfolio. */
+    synchronized void restorePosition(Position saved) {
+        int symbolId = SymbolRegistry.idOf(saved.getSymbol());
+        int row = rowOf(symbolId);
+        quantities[row] = saved.getQuantity();
+        costBases[row] = saved.getCostBasis();
+        lastPrices[row] = saved.getLastPrice();
+        realizedPnls[row] = saved.getRealizedPnl();
+        marketValue += saved.getMarketValue();
+        costBasis += saved.getCostBasis();
+        realizedPnl += saved.getRealizedPnl();
+        if (saved.getQuantity() != 0) watch(row);
+    }
+
+    /** All positions including closed ones, which still carry realized P&L. */
+    synchronized List<Position> getAllPositions() {
+        List<Position> all = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            all.add(positionAt(row));
+        }
+        return all;
+    }
+
+    private Position positionAt(int row) {
+        return new Position(symbols[row], quantities[row], costBases[row],
+                lastPrices[row], realizedPnls[row]);
+    }
+
+    // Logged before the in-memory update so a failed write leaves both sides unchanged.
+    private void log(int symbolId, int signedQty, double price, long epochNanos) {
+        if (tradeLog == null) return;
+        try {
+            tradeLog.append(symbolId, signedQty, price, epochNanos);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to log trade", e);
+        }
+    }
+
+    /** Sends every later fill to {@code log}; null stops logging (used while replaying). */
+    synchronized void setTradeLog(TradeLog log) {
+        this.tradeLog = log;
+    }
+
+    synchronized TradeLog getTradeLog() {
+        return tradeLog;
+    }
+
+    /** Makes every fill logged so far durable; called before fills are acknowledged. */
+    void syncTradeLog() {
+        TradeLog log = getTradeLog();
+        if (log == null) return;
+        try {
+            log.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync trade log", e);
+        }
+    }
+
+    @Override
+    public synchronized void onPrice(Stock stock, double price) {
+        int row = rows.get(stock.getSymbolId(), -1);
+        if (row < 0) return;
+        mark(row, price);
+        if (quantities[row] == 0 && subscribed[row]) {
+            stock.unsubscribe(this);
+            subscribed[row] = false;
+        }
+    }
+
+    private void mark(int row, double price) {
+        marketValue += quantities[row] * (price - lastPrices[row]);
+        lastPrices[row] = price;
+    }
+
+    private void watch(int row) {
+        if (market == null) return;
+        Stock stock = market.getStockBySymbolId(symbolIds[row]);
+        if (stock == null) return;
+        if (!subscribed[row]) {
+            stock.subscribe(this);
+            subscribed[row] = true;
+        }
+        // Catch up with any tick that landed between the fill and the subscription.
+        mark(row, stock.getPrice());
     }
 
     public void displayPortfolio(Market market) {
+        List<Position> snapshot;
+        double totalValue, unrealized, realized;
+        synchronized (this) {
+            if (this.market == null) {
+                // Not fed by ticks; bring each position up to the market's current price.
+                for (int row = 0; row < rowCount; row++) {
+                    Stock stock = market.getStockBySymbolId(symbolIds[row]);
+                    if (stock != null) mark(row, stock.getPrice());
+                }
+            }
+            snapshot = getPositions();
+            totalValue = marketValue;
+            unrealized = marketValue - costBasis;
+            realized = realizedPnl;
+        }
         System.out.println("\n--- Portfolio ---");
-        double totalValue = 0;
+        for (Position position : snapshot) {
+            System.out.printf("%s | Qty: %d | Avg: $%.2f | Value: $%.2f | Unrealized: $%.2f%n",
+                    position.getSymbol(), position.getQuantity(), position.getAverageCost(),
+                    position.getMarketValue(), position.getUnrealizedPnl());
+        }
+        System.out.printf("Total Portfolio Value: $%.2f%n", totalValue);
+        System.out.printf("Unrealized P&L: $%.2f | Realized P&L: $%.2f%n", unrealized, realized);
+    }
+
+    public synchronized double getMarketValue() {
+        return marketValue;
+    }
+
+    public synchronized double getUnrealizedPnl() {
+        return marketValue - costBasis;
+    }
+
+    public synchronized double getRealizedPnl() {
+        return realizedPnl;
+    }
 
-        for (String symbol : holdings.keySet()) {
-            int qty = holdings.get(symbol);
-            double price = market.getStock(symbol).getPrice();
-            double value = qty * price;
-            totalValue += value;
+    /** Shares currently held of a symbol, by registry id. */
+    public synchronized int getQuantity(int symbolId) {
+        int row = rows.get(symbolId, -1);
+        return row < 0 ? 0 : quantities[row];
+    }
+
+    public int getQuantity(String symbol) {
+        int symbolId = SymbolRegistry.lookup(symbol);
+        return symbolId < 0 ? 0 : getQuantity(symbolId);
+    }
 
-            System.out.println(symbol + " | Qty: " + qty + " | Value: $" + value);
+    /** Snapshot of one position, or null if the symbol was never held. */
+    public synchronized Position getPosition(String symbol) {
+        int symbolId = SymbolRegistry.lookup(symbol);
+        int row = symbolId < 0 ? -1 : rows.get(symbolId, -1);
+        return row < 0 ? null : positionAt(row);
+    }
+
+    /** Snapshots of the open positions. */
+    public synchronized List<Position> getPositions() {
+        List<Position> open = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (quantities[row] != 0) open.add(positionAt(row));
         }
-        System.out.println("Total Portfolio Value: $" + totalValue);
+        return open;
     }
 
-    public List<Transaction> getTransactions() {
+    public TransactionLedger getTransactions() {
         return transactions;
     }
 
-    public Map<String, Integer> getHoldings() {
+    /** Copy of the open holdings by symbol; use {@link #getQuantity(int)} on hot paths. */
+    public synchronized Map<String, Integer> getHoldings() {
+        Map<String, Integer> holdings = new HashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (quantities[row] != 0) holdings.put(symbols[row], quantities[row]);
+        }
         return holdings;
     }
 }
-
@@ -0,0 +1,51 @@
+/**
+ * Snapshot of one holding in a {@link Portfolio}, valued at the last price the portfolio saw
+ * for the symbol. Cost is tracked at average cost.
+ */
+public class Position {
+    private final String symbol;
+    private final int quantity;
+    private final double costBasis;
+    private final double lastPrice;
+    private final double realizedPnl;
+
+    Position(String symbol, int quantity, double costBasis, double lastPrice, double realizedPnl) {
+        this.symbol = symbol;
+        this.quantity = quantity;
+        this.costBasis = costBasis;
+        this.lastPrice = lastPrice;
+        this.realizedPnl = realizedPnl;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getAverageCost() {
+        return quantity == 0 ? 0 : costBasis / quantity;
+    }
+
+    public double getCostBasis() {
+        return costBasis;
+    }
+
+    public double getLastPrice() {
+        return lastPrice;
+    }
+
+    public double getMarketValue() {
+        return quantity * lastPrice;
+    }
+
+    public double getRealizedPnl() {
+        return realizedPnl;
+    }
+
+    public double getUnrealizedPnl() {
+        return getMarketValue() - costBasis;
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Callback for price updates on a single stock. Runs on the thread that applied the tick,
+ * so implementations should be quick and must not block.
+ */
+public interface PriceListener {
+    void onPrice(Stock stock, double price);
+}
@@ -0,0 +1,66 @@
+/**
+ * SMA, EMA and VWAP over the last {@code window} updates, each maintained in O(1) per
+ * update from ring buffers of primitives. Running sums are rebuilt from the buffers once
+ * per lap so floating-point drift cannot accumulate.
+ */
+public class RollingIndicators {
+    private final double[] prices;
+    private final long[] volumes;
+    private final double alpha;
+    private int next;
+    private int count;
+    private double priceSum;
+    private double notionalSum;
+    private long volumeSum;
+    private double ema = Double.NaN;
+
+    public RollingIndicators(int window) {
+        if (window <= 0) throw new IllegalArgumentException("Window must be positive: " + window);
+        this.prices = new double[window];
+        this.volumes = new long[window];
+        this.alpha = 2.0 / (window + 1);
+    }
+
+    public void update(double price, long volume) {
+        if (count == prices.length) {
+            priceSum -= prices[next];
+            notionalSum -= prices[next] * volumes[next];
+            volumeSum -= volumes[next];
+        } else {
+            count++;
+        }
+        prices[next] = price;
+        volumes[next] = volume;
+        priceSum += price;
+        notionalSum += price * volume;
+        volumeSum += volume;
+        ema = Double.isNaN(ema) ? price : ema + alpha * (price - ema);
+        if (++next == prices.length) {
+            next = 0;
+            resum();
+        }
+    }
+
+    private void resum() {
+        priceSum = 0;
+        notionalSum = 0;
+        volumeSum = 0;
+        for (int i = 0; i < count; i++) {
+            priceSum += prices[i];
+            notionalSum += prices[i] * volumes[i];
+            volumeSum += volumes[i];
+        }
+    }
+
+    public double sma() {
+        return count == 0 ? Double.NaN : priceSum / count;
+    }
+
+    public double ema() {
+        return ema;
+    }
+
+    public double vwap() {
+        return volumeSum == 0 ? Double.NaN : notionalSum / volumeSum;
+    }
+}
@@ -0,0 +1,18 @@
+/** A clock that only moves when told to, driven by the timestamps of replayed ticks. */
+public class SimulatedClock implements MarketClock {
+    private volatile long nanos;
+
+    public SimulatedClock(long startNanos) {
+        this.nanos = startNanos;
+    }
+
+    /** Moves the clock forward; earlier times are ignored so it never runs backwards. */
+    public void advanceTo(long epochNanos) {
+        if (epochNanos > nanos) nanos = epochNanos;
+    }
+
+    @Override
+    public long nowNanos() {
+        return nanos;
+    }
+}
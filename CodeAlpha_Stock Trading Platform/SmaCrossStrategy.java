@@ -0,0 +1,54 @@
+/**
+ * Buys a fixed quantity when a symbol's fast SMA crosses above its slow SMA and sells the
+ * whole position when it crosses back below. Averages are kept per market slot.
+ */
+public class SmaCrossStrategy implements Strategy {
+    private final int fastWindow;
+    private final int slowWindow;
+    private final int quantity;
+    private User user;
+    private RollingIndicators[] fast;
+    private RollingIndicators[] slow;
+    private boolean[] above;
+
+    public SmaCrossStrategy(int fastWindow, int slowWindow, int quantity) {
+        if (fastWindow >= slowWindow) throw new IllegalArgumentException("Fast window must be shorter than slow");
+        this.fastWindow = fastWindow;
+        this.slowWindow = slowWindow;
+        this.quantity = quantity;
+    }
+
+    @Override
+    public void onStart(Market market, User user) {
+        this.user = user;
+        int symbols = market.size();
+        fast = new RollingIndicators[symbols];
+        slow = new RollingIndicators[symbols];
+        above = new boolean[symbols];
+        for (int i = 0; i < symbols; i++) {
+            fast[i] = new RollingIndicators(fastWindow);
+            slow[i] = new RollingIndicators(slowWindow);
+        }
+    }
+
+    @Override
+    public void onTick(Stock stock, double price) {
+        int slot = stock.getSlot();
+        fast[slot].update(price, 1);
+        slow[slot].update(price, 1);
+        boolean nowAbove = fast[slot].sma() > slow[slot].sma();
+        if (nowAbove == above[slot]) return;
+        above[slot] = nowAbove;
+        if (nowAbove) {
+            user.buy(stock, quantity);
+        } else {
+            int held = user.getPortfolio().getQuantity(stock.getSymbolId());
+            if (held > 0) user.sell(stock, held);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SMA " + fastWindow + "/" + slowWindow;
+    }
+}
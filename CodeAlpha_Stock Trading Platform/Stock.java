@@ -1,9 +1,24 @@
+import java.util.Arrays;
+
 public class Stock {
-    private String symbol;
-    private double price;
+    private static final PriceListener[] NO_LISTENERS = new PriceListener[0];
+
+    private final String symbol;
+    private final int symbolId;
+    private final int slot;
+    // Volatile so readers on any thread see the latest tick and never a torn double.
+    private volatile double price;
+    private volatile PriceListener[] listeners = NO_LISTENERS;
+    private volatile OrderBook orderBook;
 
     public Stock(String symbol, double price) {
+        this(symbol, -1, price);
+    }
+
+    Stock(String symbol, int slot, double price) {
         this.symbol = symbol;
+        this.symbolId = SymbolRegistry.idOf(symbol);
+        this.slot = slot;
         this.price = price;
     }
 
@@ -11,12 +26,63 @@ public class Stock {
         return symbol;
     }
 
+    /** The symbol's {@link SymbolRegistry} id, which portfolios and order callbacks key on. */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    /** Position of this stock in the market's price table, or -1 if it is not listed. */
+    public int getSlot() {
+        return slot;
+    }
+
     public double getPrice() {
         return price;
     }
 
+    /** Publishes a tick. A listener that throws is reported and skipped; the rest still get the tick. */
     public void setPrice(double price) {
         this.price = price;
+        for (PriceListener listener : listeners) {
+            try {
+                listener.onPrice(this, price);
+            } catch (RuntimeException e) {
+                System.err.println("Price listener failed on " + symbol + ": " + e);
+            }
+        }
+    }
+
+    /** The stock's order book, created on first use so unlisted or untraded symbols cost nothing. */
+    public OrderBook getOrderBook() {
+        OrderBook book = orderBook;
+        if (book == null) {
+            synchronized (this) {
+                book = orderBook;
+                if (book == null) {
+                    book = new OrderBook(symbol);
+                    orderBook = book;
+                }
+            }
+        }
+        return book;
     }
-}
 
+    // Subscriptions are rare compared to ticks, so copy-on-write keeps setPrice lock-free.
+    public synchronized void subscribe(PriceListener listener) {
+        PriceListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[listeners.length] = listener;
+        listeners = next;
+    }
+
+    public synchronized void unsubscribe(PriceListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                PriceListener[] next = new PriceListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, next, 0, i);
+                System.arraycopy(listeners, i + 1, next, i, next.length - i);
+                listeners = next;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * A trading strategy driven by the {@link Backtester}. Each run gets its own instance,
+ * market and user, and calls it on a single thread.
+ */
+public interface Strategy {
+    /** Called once before the first tick with the run's market and trading account. */
+    default void onStart(Market market, User user) {
+    }
+
+    /**
+     * Called after each tick has moved {@code stock} to {@code price}. Orders the account
+     * rejects (IllegalArgumentException) are counted by the run and otherwise ignored.
+     */
+    void onTick(Stock stock, double price);
+}
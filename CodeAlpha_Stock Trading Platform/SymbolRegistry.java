@@ -0,0 +1,47 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide mapping between ticker strings and dense int ids, so storage and hot paths
+ * can carry a 4-byte id instead of a String. Ids are never reused or removed.
+ */
+public final class SymbolRegistry {
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[0];
+
+    private SymbolRegistry() {
+    }
+
+    /** Returns the id for {@code symbol}, assigning the next free one on first sight. */
+    public static int idOf(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : register(symbol);
+    }
+
+    /** Returns the id for {@code symbol}, or -1 if it was never registered. */
+    public static int lookup(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : -1;
+    }
+
+    public static String nameOf(int id) {
+        return names[id];
+    }
+
+    public static int size() {
+        return names.length;
+    }
+
+    private static synchronized int register(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) return id;
+        int next = names.length;
+        String[] grown = Arrays.copyOf(names, next + 1);
+        grown[next] = symbol;
+        // Publish the name before the id so nameOf never misses an id handed out by idOf.
+        names = grown;
+        ids.put(symbol, next);
+        return next;
+    }
+}
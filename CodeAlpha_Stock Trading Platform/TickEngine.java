@@ -0,0 +1,111 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives market prices, either from a random walk or by replaying a file of
+ * {@code SYMBOL,price} lines. Random-walk workers each own a disjoint range of slots,
+ * so every symbol has a single writer and ticks need no locks or CAS loops.
+ */
+public class TickEngine {
+    private final Market market;
+    private final LongAdder ticks = new LongAdder();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public TickEngine(Market market) {
+        this.market = market;
+    }
+
+    /**
+     * Starts {@code threads} random-walk workers over the symbols listed at this point, or one
+     * per symbol if there are fewer symbols than that, so no worker is left without slots.
+     * Each worker sweeps its slots, then sleeps {@code pauseMillis} (0 runs flat out).
+     */
+    public synchronized void startRandomWalk(int threads, long pauseMillis, long seed) {
+        if (running) throw new IllegalStateException("Tick engine already running");
+        running = true;
+        int symbols = market.size();
+        threads = Math.min(threads, symbols);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) symbols * t / threads);
+            int to = (int) ((long) symbols * (t + 1) / threads);
+            SplittableRandom rnd = seeds.split();
+            Thread worker = new Thread(() -> walk(from, to, pauseMillis, rnd), "tick-" + t);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private void walk(int from, int to, long pauseMillis, SplittableRandom rnd) {
+        long local = 0;
+        while (running) {
+            for (int slot = from; slot < to; slot++) {
+                double price = market.getStockAtSlot(slot).getPrice();
+                // +-0.1% per tick, floored at one cent
+                double next = price * (1 + (rnd.nextDouble() - 0.5) * 0.002);
+                market.updatePrice(slot, Math.max(0.01, next));
+            }
+            local += to - from;
+            if (local >= 4096 || pauseMillis > 0) {
+                ticks.add(local);
+                local = 0;
+            }
+            if (pauseMillis > 0) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        ticks.add(local);
+    }
+
+    /**
+     * Replays a tick file on the calling thread. Symbols not yet listed are added on their
+     * first tick; blank lines and lines starting with '#' are skipped. Returns ticks applied.
+     */
+    public long replay(File file) throws IOException {
+        long applied = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') continue;
+                int comma = line.indexOf(',');
+                if (comma < 0) throw new IOException("Bad tick line: " + line);
+                String symbol = line.substring(0, comma).trim();
+                double price = Double.parseDouble(line.substring(comma + 1).trim());
+                Stock stock = market.getStock(symbol);
+                if (stock == null) {
+                    market.addStock(symbol, price);
+                } else {
+                    stock.setPrice(price);
+                }
+                applied++;
+            }
+        }
+        ticks.add(applied);
+        return applied;
+    }
+
+    public void stop() throws InterruptedException {
+        List<Thread> toJoin;
+        synchronized (this) {
+            running = false;
+            toJoin = new ArrayList<>(workers);
+            workers.clear();
+        }
+        for (Thread worker : toJoin) {
+            worker.join();
+        }
+    }
+
+    public long getTickCount() {
+        return ticks.sum();
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Historical ticks read straight out of a memory-mapped file, either CSV lines of
+ * {@code epochMillis,SYMBOL,price} or the binary format written by {@link #convert}.
+ * Opening a file maps it and learns its symbols once; after that any number of threads can
+ * each walk their own {@link Cursor}, which parses in place without allocating.
+ * Large files are mapped in segments of up to 1 GiB, split on record boundaries.
+ */
+public class TickFile {
+    private static final int MAGIC = 0x54494B31; // "TIK1"
+    private static final int BINARY_RECORD = 20;
+    private static final long MAX_SEGMENT = 1L << 30;
+    private static final double[] POW10 = new double[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final File file;
+    private final boolean binary;
+    private final MappedByteBuffer[] segments;
+    private final List<byte[]> symbolBytes = new ArrayList<>();
+    private final List<String> symbols = new ArrayList<>();
+    private double[] firstPrices = new double[16];
+    private int[] lookup = new int[64]; // open addressing on symbol bytes, holds index + 1
+    private long tickCount;
+    private long firstNanos = Long.MAX_VALUE;
+
+    private TickFile(File file, boolean binary, MappedByteBuffer[] segments) {
+        this.file = file;
+        this.binary = binary;
+        this.segments = segments;
+    }
+
+    public static TickFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = ByteBuffer.allocate(4);
+            channel.read(head, 0);
+            if (size >= 4 && head.getInt(0) == MAGIC) return openBinary(file, channel);
+            List<MappedByteBuffer> segments = new ArrayList<>();
+            long start = 0;
+            while (start < size) {
+                long end = Math.min(start + MAX_SEGMENT, size);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                if (end < size) {
+                    // Cut after the last complete line so no record straddles two segments.
+                    int cut = segment.limit() - 1;
+                    while (cut >= 0 && segment.get(cut) != '\n') cut--;
+                    if (cut < 0) throw new IOException("Line longer than a segment in " + file);
+                    segment.limit(cut + 1);
+                    end = start + cut + 1;
+                }
+                segments.add(segment);
+                start = end;
+            }
+            TickFile ticks = new TickFile(file, false, segments.toArray(new MappedByteBuffer[0]));
+            ticks.scanSymbols();
+            return ticks;
+        }
+    }
+
+    private static TickFile openBinary(File file, FileChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        TickFile ticks;
+        long dataStart;
+        try {
+            in.readInt();
+            int count = in.readInt();
+            long headerBytes = 8;
+            String[] names = new String[count];
+            double[] prices = new double[count];
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[in.readUnsignedShort()];
+                in.readFully(name);
+                names[i] = new String(name, StandardCharsets.UTF_8);
+                prices[i] = in.readDouble();
+                headerBytes += 2 + name.length + 8;
+            }
+            long tickCount = in.readLong();
+            long firstNanos = in.readLong();
+            dataStart = headerBytes + 16;
+            long segmentBytes = MAX_SEGMENT / BINARY_RECORD * BINARY_RECORD;
+            long end = dataStart + tickCount * BINARY_RECORD;
+            if (end > channel.size()) throw new IOException("Truncated tick file: " + file);
+            List<MappedByteBuffer> segments = new ArrayList<>();
+            for (long start = dataStart; start < end; start += segmentBytes) {
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentBytes, end - start)));
+            }
+            ticks = new TickFile(file, true, segments.toArray(new MappedByteBuffer[0]));
+            for (int i = 0; i < count; i++) {
+                ticks.addSymbol(names[i].getBytes(StandardCharsets.UTF_8), names[i], prices[i]);
+            }
+            ticks.tickCount = tickCount;
+            ticks.firstNanos = firstNanos;
+        } finally {
+            in.close();
+        }
+        return ticks;
+    }
+
+    // One pass over a CSV file to learn its symbols, first prices and size.
+    private void scanSymbols() throws IOException {
+        Cursor cursor = new Cursor(true);
+        while (cursor.next()) {
+            tickCount++;
+            if (tickCount == 1) firstNanos = cursor.epochNanos();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getSymbolCount() {
+        return symbols.size();
+    }
+
+    public String getSymbol(int index) {
+        return symbols.get(index);
+    }
+
+    public double getFirstPrice(int index) {
+        return firstPrices[index];
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getFirstNanos() {
+        return tickCount == 0 ? 0 : firstNanos;
+    }
+
+    public Cursor cursor() {
+        return new Cursor(false);
+    }
+
+    /**
+     * Walks the ticks in file order. Accessors describe the current tick; the symbol is the
+     * file's own index, see {@link #getSymbol}.
+     */
+    public class Cursor {
+        private final boolean discover;
+        private int segment;
+        private ByteBuffer buffer;
+        private long nanos;
+        private int symbol;
+        private double price;
+        private boolean added;
+
+        private Cursor(boolean discover) {
+            this.discover = discover;
+            this.buffer = segments.length == 0 ? ByteBuffer.allocate(0) : segments[0].duplicate();
+        }
+
+        public boolean next() throws IOException {
+            while (true) {
+                while (!buffer.hasRemaining()) {
+                    if (++segment >= segments.length) return false;
+                    buffer = segments[segment].duplicate();
+                }
+                if (binary) {
+                    nanos = buffer.getLong();
+                    symbol = buffer.getInt();
+                    price = buffer.getDouble();
+                    return true;
+                }
+                // Blank and comment lines are skipped in the loop, however many there are in a row.
+                if (parseLine()) return true;
+            }
+        }
+
+        public long epochNanos() {
+            return nanos;
+        }
+
+        public int symbol() {
+            return symbol;
+        }
+
+        public double price() {
+            return price;
+        }
+
+        // Parses one CSV line in place; returns false for blank and comment lines.
+        private boolean parseLine() throws IOException {
+            ByteBuffer b = buffer;
+            int p = b.position();
+            int limit = b.limit();
+            byte first = b.get(p);
+            if (first == '\n' || first == '\r' || first == '#') {
+                while (p < limit && b.get(p) != '\n') p++;
+                b.position(Math.min(p + 1, limit));
+                return false;
+            }
+            long millis = 0;
+            boolean negative = first == '-';
+            if (negative) p++;
+            byte c;
+            while (p < limit && (c = b.get(p)) != ',') {
+                if (c < '0' || c > '9') throw bad(p);
+                millis = millis * 10 + (c - '0');
+                p++;
+            }
+            if (p >= limit) throw bad(p);
+            nanos = (negative ? -millis : millis) * 1_000_000L;
+            int symbolStart = ++p;
+            int hash = 0x811c9dc5;
+            while (p < limit && (c = b.get(p)) != ',') {
+                if (c == '\n') throw bad(p);
+                hash = (hash ^ c) * 0x01000193;
+                p++;
+            }
+            if (p >= limit) throw bad(p);
+            symbol = findSymbol(b, symbolStart, p - symbolStart, hash);
+            int priceStart = ++p;
+            long mantissa = 0;
+            int digits = 0;
+            int fraction = -1;
+            boolean plain = true;
+            while (p < limit && (c = b.get(p)) != '\n' && c != '\r') {
+                if (c >= '0' && c <= '9') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (++digits > 18) plain = false;
+                    if (fraction >= 0) fraction++;
+                } else if (c == '.' && fraction < 0) {
+                    fraction = 0;
+                } else {
+                    plain = false;
+                }
+                p++;
+            }
+            if (plain && digits > 0) {
+                price = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+            } else {
+                // Exponents and other rare spellings take the slow, allocating path.
+                byte[] text = new byte[p - priceStart];
+                b.get(priceStart, text);
+                price = Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+            }
+            while (p < limit && b.get(p) != '\n') p++;
+            b.position(Math.min(p + 1, limit));
+            if (added) {
+                firstPrices[symbol] = price;
+                added = false;
+            }
+            return true;
+        }
+
+        private int findSymbol(ByteBuffer b, int start, int length, int hash) throws IOException {
+            int mask = lookup.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int entry = lookup[slot];
+                if (entry == 0) break;
+                if (matches(symbolBytes.get(entry - 1), b, start, length)) return entry - 1;
+            }
+            if (!discover) throw new IOException("Symbol not seen while scanning " + file);
+            byte[] name = new byte[length];
+            b.get(start, name);
+            addSymbol(name, new String(name, StandardCharsets.UTF_8), 0);
+            added = true;
+            return symbols.size() - 1;
+        }
+
+        private IOException bad(int position) {
+            return new IOException("Malformed tick near byte " + position + " of segment " + segment + " in " + file);
+        }
+    }
+
+    private void addSymbol(byte[] name, String symbol, double firstPrice) {
+        symbolBytes.add(name);
+        symbols.add(symbol);
+        int index = symbols.size() - 1;
+        if (index == firstPrices.length) firstPrices = Arrays.copyOf(firstPrices, index * 2);
+        firstPrices[index] = firstPrice;
+        if (symbols.size() * 2 > lookup.length) {
+            lookup = new int[lookup.length * 2];
+            for (int i = 0; i < symbolBytes.size(); i++) insert(i);
+        } else {
+            insert(index);
+        }
+    }
+
+    private void insert(int index) {
+        int hash = 0x811c9dc5;
+        for (byte c : symbolBytes.get(index)) hash = (hash ^ c) * 0x01000193;
+        int mask = lookup.length - 1;
+        int slot = hash & mask;
+        while (lookup[slot] != 0) slot = (slot + 1) & mask;
+        lookup[slot] = index + 1;
+    }
+
+    private static boolean matches(byte[] name, ByteBuffer b, int start, int length) {
+        if (name.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (name[i] != b.get(start + i)) return false;
+        }
+        return true;
+    }
+
+    /** Rewrites a tick file in the compact binary format: 20 bytes a tick, nothing to parse. */
+    public static void convert(File source, File target) throws IOException {
+        TickFile ticks = open(source);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(ticks.getSymbolCount());
+            for (int i = 0; i < ticks.getSymbolCount(); i++) {
+                byte[] name = ticks.getSymbol(i).getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeDouble(ticks.getFirstPrice(i));
+            }
+            out.writeLong(ticks.getTickCount());
+            out.writeLong(ticks.getFirstNanos());
+            Cursor cursor = ticks.cursor();
+            while (cursor.next()) {
+                out.writeLong(cursor.epochNanos());
+                out.writeInt(cursor.symbol());
+                out.writeDouble(cursor.price());
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of one account's fills. Each record is framed as
+ * {@code [int length][int crc32][payload]}. A trade's payload is the fixed-size
+ * {@code TRADE, seq, epochNanos, priceTicks, signedQty, nameId}, so the cost of saving a trade
+ * is one small write whatever the account's size. Symbol names are written once: the first
+ * trade of a symbol since the log was opened or reset is preceded by a
+ * {@code NAME, nameId, length, utf8} record binding a log-local id to the name, and replay
+ * resolves ids through the bindings seen so far. Sequence numbers let a snapshot say which
+ * records it already contains.
+ *
+ * <p>Appends only reach the OS; {@link #sync()} makes them durable and is called before a
+ * fill is acknowledged. Callers that sync at the same time share one force, so a burst of
+ * fills costs one disk flush rather than one each (group commit).
+ */
+public class TradeLog implements Closeable {
+    static final String FILE = "trades.log";
+    private static final int MAX_RECORD = 1024;
+    private static final byte TRADE = 0;
+    private static final byte NAME = 1;
+    private static final int TRADE_LENGTH = 1 + 8 + 8 + 8 + 4 + 4;
+    private static final int MIN_NAME_LENGTH = 1 + 4 + 1 + 1;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(MAX_RECORD);
+    private final CRC32 crc = new CRC32();
+    // Log-local name ids by registry id, for the symbols bound since the log was opened or reset.
+    private IntIntMap nameIds = new IntIntMap();
+    private int nextNameId;
+    private long nextSeq;
+
+    // Group commit state, guarded by syncLock rather than this so appends never wait on a force.
+    private final Object syncLock = new Object();
+    private long durableSeq;
+    private boolean forcing;
+
+    private TradeLog(FileChannel channel, long nextSeq) {
+        this.channel = channel;
+        this.nextSeq = nextSeq;
+        this.durableSeq = nextSeq - 1;
+    }
+
+    /** Opens the log for appending after the last intact record, dropping any torn tail. */
+    static TradeLog open(File file, long validLength, long nextSeq) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        // Records replayed from the page cache after a clean exit may not be on disk yet.
+        channel.force(false);
+        return new TradeLog(channel, nextSeq);
+    }
+
+    public void append(String symbol, int signedQty, double price, long epochNanos) throws IOException {
+        append(SymbolRegistry.idOf(symbol), signedQty, price, epochNanos);
+    }
+
+    public synchronized void append(int symbolId, int signedQty, double price, long epochNanos) throws IOException {
+        int nameId = nameIds.get(symbolId, -1);
+        if (nameId < 0) nameId = bindName(symbolId);
+        buffer.clear();
+        buffer.position(8);
+        buffer.put(TRADE).putLong(nextSeq).putLong(epochNanos).putLong(Math.round(price * 100)).putInt(signedQty)
+                .putInt(nameId);
+        writeRecord();
+        nextSeq++;
+    }
+
+    // Writes the NAME record for a symbol's first trade in this log; later trades carry only the id.
+    private int bindName(int symbolId) throws IOException {
+        String symbol = SymbolRegistry.nameOf(symbolId);
+        byte[] name = symbol.getBytes(StandardCharsets.UTF_8);
+        if (name.length == 0 || name.length > 255) throw new IllegalArgumentException("Bad symbol: " + symbol);
+        int nameId = nextNameId;
+        buffer.clear();
+        buffer.position(8);
+        buffer.put(NAME).putInt(nameId).put((byte) name.length).put(name);
+        writeRecord();
+        nextNameId++;
+        nameIds.put(symbolId, nameId);
+        return nameId;
+    }
+
+    // Frames the payload between offset 8 and the buffer's position and writes it out.
+    private void writeRecord() throws IOException {
+        int length = buffer.position() - 8;
+        crc.reset();
+        crc.update(buffer.array(), 8, length);
+        buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /** Sequence number of the last record appended, or one less than the first if none were. */
+    synchronized long lastSeq() {
+        return nextSeq - 1;
+    }
+
+    /**
+     * Empties the log once a snapshot covers everything in it; sequence numbers keep counting.
+     * The name bindings went with the old records, so names are written again as they recur.
+     */
+    synchronized void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        nameIds = new IntIntMap();
+        nextNameId = 0;
+    }
+
+    /**
+     * Returns once every record appended before the call is on disk. If another thread is
+     * already forcing, waits for it and only forces again if that did not cover this call.
+     */
+    public void sync() throws IOException {
+        long target = lastSeq();
+        synchronized (syncLock) {
+            while (durableSeq < target && forcing) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the trade log to sync");
+                }
+            }
+            if (durableSeq >= target) return;
+            forcing = true;
+        }
+        // Everything appended up to here goes out with this force, including other callers' records.
+        long covered = lastSeq();
+        boolean done = false;
+        try {
+            channel.force(false);
+            done = true;
+        } finally {
+            synchronized (syncLock) {
+                forcing = false;
+                if (done) durableSeq = Math.max(durableSeq, covered);
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /** Receives replayed records in log order. */
+    interface Visitor {
+        void trade(long seq, String symbol, int signedQty, double price, long epochNanos);
+    }
+
+    /**
+     * Reads every intact record and returns the byte length of the intact prefix; reading
+     * stops at the first torn or corrupt record.
+     */
+    static long replay(File file, Visitor visitor) throws IOException {
+        if (!file.exists()) return 0;
+        long valid = 0;
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[MAX_RECORD];
+        String[] names = new String[16];
+        int bound = 0; // ids below this have a binding
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            while (true) {
+                int length, checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < MIN_NAME_LENGTH || length > MAX_RECORD) break;
+                    in.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) break;
+                ByteBuffer record = ByteBuffer.wrap(payload, 0, length);
+                byte kind = record.get();
+                if (kind == NAME) {
+                    int nameId = record.getInt();
+                    int nameLength = record.get() & 0xFF;
+                    // Ids are handed out densely, so a binding can only reuse an id or take the next one.
+                    if (nameId < 0 || nameId > bound || length != MIN_NAME_LENGTH - 1 + nameLength) break;
+                    if (nameId == names.length) names = Arrays.copyOf(names, names.length * 2);
+                    names[nameId] = new String(payload, record.position(), nameLength, StandardCharsets.UTF_8);
+                    if (nameId == bound) bound++;
+                } else if (kind == TRADE && length == TRADE_LENGTH) {
+                    long seq = record.getLong();
+                    long epochNanos = record.getLong();
+                    long priceTicks = record.getLong();
+                    int signedQty = record.getInt();
+                    int nameId = record.getInt();
+                    if (nameId < 0 || nameId >= bound) break;
+                    visitor.trade(seq, names[nameId], signedQty, priceTicks / 100.0, epochNanos);
+                } else {
+                    break;
+                }
+                valid += 8 + length;
+            }
+        }
+        return valid;
+    }
+}
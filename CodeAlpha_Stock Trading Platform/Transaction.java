@@ -1,4 +1,6 @@
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public class Transaction {
     private String symbol;
@@ -7,10 +9,36 @@ public class Transaction {
     private LocalDateTime time;
 
     public Transaction(String symbol, int quantity, double price) {
+        this(symbol, quantity, price, MarketClock.SYSTEM);
+    }
+
+    /** Stamped with the clock's time, which a backtest drives from its tick data. */
+    public Transaction(String symbol, int quantity, double price, MarketClock clock) {
+        this(symbol, quantity, price, clock.nowNanos());
+    }
+
+    /** A view of a ledger record; {@code epochNanos} is converted to local time. */
+    public Transaction(String symbol, int quantity, double price, long epochNanos) {
         this.symbol = symbol;
         this.quantity = quantity;
         this.price = price;
-        this.time = LocalDateTime.now();
+        this.time = LocalDateTime.ofInstant(Instant.ofEpochSecond(0, epochNanos), ZoneId.systemDefault());
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
     }
 
     @Override
@@ -0,0 +1,164 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Append-only trade history stored column by column in direct (off-heap) buffers:
+ * epoch nanos, price in cents, symbol id and signed quantity, 24 bytes per fill.
+ * Storage grows in chunks of 65536 records; the first chunk starts small and
+ * doubles up to that size so accounts with few trades stay cheap.
+ *
+ * <p>One thread appends at a time (the owning account's). Readers take a consistent
+ * snapshot without locking: they only see records below the size they read at the start.
+ */
+public class TransactionLedger {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int FIRST_CHUNK = 64;
+    private static final int RECORD_BYTES = 24;
+
+    // Nothing is allocated until the first fill.
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile int size;
+
+    public void append(int symbolId, int qty, double price, long epochNanos) {
+        int index = size;
+        ByteBuffer[] current = chunks;
+        int c = index >>> CHUNK_BITS;
+        int offset = index & (CHUNK - 1);
+        if (c == current.length) {
+            current = Arrays.copyOf(current, c + 1);
+            current[c] = allocate(c == 0 ? FIRST_CHUNK : CHUNK);
+            chunks = current;
+        } else if (offset == capacity(current[c])) {
+            current = current.clone();
+            current[c] = grow(current[c]);
+            chunks = current;
+        }
+        ByteBuffer chunk = current[c];
+        int cap = capacity(chunk);
+        chunk.putLong(offset * 8, epochNanos);
+        chunk.putLong(cap * 8 + offset * 8, Math.round(price * 100));
+        chunk.putInt(cap * 16 + offset * 4, symbolId);
+        chunk.putInt(cap * 20 + offset * 4, qty);
+        size = index + 1;
+    }
+
+    public void append(String symbol, int qty, double price) {
+        append(SymbolRegistry.idOf(symbol), qty, price, MarketClock.SYSTEM.nowNanos());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Materialises one record as a {@link Transaction}; use a {@link Cursor} for scans. */
+    public Transaction get(int index) {
+        Cursor cursor = new Cursor(index, index + 1);
+        if (!cursor.next()) throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        return cursor.toTransaction();
+    }
+
+    /** Iterates every record present now, oldest first. */
+    public Cursor cursor() {
+        return new Cursor(0, size);
+    }
+
+    /** Iterates records {@code from} (inclusive) to {@code to} (exclusive). */
+    public Cursor cursor(int from, int to) {
+        return new Cursor(from, to);
+    }
+
+    /**
+     * Reads records in place; accessors return the current record's fields straight from the
+     * column buffers, without allocating.
+     */
+    public class Cursor {
+        private final ByteBuffer[] view;
+        private final int end;
+        private int index;
+        private ByteBuffer chunk;
+        private int cap;
+        private int offset;
+
+        private Cursor(int from, int to) {
+            // Size before chunks: append publishes a grown chunk array before the size that
+            // needs it, so the array read second always covers every record below limit.
+            int limit = size;
+            this.view = chunks;
+            if (from < 0 || to > limit || from > to) {
+                throw new IndexOutOfBoundsException("Range " + from + ".." + to + ", size " + limit);
+            }
+            this.index = from - 1;
+            this.end = to;
+        }
+
+        public boolean next() {
+            if (index + 1 >= end) return false;
+            index++;
+            chunk = view[index >>> CHUNK_BITS];
+            cap = capacity(chunk);
+            offset = index & (CHUNK - 1);
+            return true;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public long epochNanos() {
+            return chunk.getLong(offset * 8);
+        }
+
+        public long priceTicks() {
+            return chunk.getLong(cap * 8 + offset * 8);
+        }
+
+        public double price() {
+            return priceTicks() / 100.0;
+        }
+
+        public int symbolId() {
+            return chunk.getInt(cap * 16 + offset * 4);
+        }
+
+        public String symbol() {
+            return SymbolRegistry.nameOf(symbolId());
+        }
+
+        public int quantity() {
+            return chunk.getInt(cap * 20 + offset * 4);
+        }
+
+        public Transaction toTransaction() {
+            return new Transaction(symbol(), quantity(), price(), epochNanos());
+        }
+    }
+
+    private static int capacity(ByteBuffer chunk) {
+        return chunk.capacity() / RECORD_BYTES;
+    }
+
+    private static ByteBuffer allocate(int records) {
+        return ByteBuffer.allocateDirect(records * RECORD_BYTES);
+    }
+
+    // Only the first chunk grows; each column moves to its offset in the bigger buffer.
+    private static ByteBuffer grow(ByteBuffer chunk) {
+        int cap = capacity(chunk);
+        ByteBuffer bigger = allocate(Math.min(cap * 2, CHUNK));
+        int newCap = capacity(bigger);
+        copy(chunk, 0, bigger, 0, cap * 8);
+        copy(chunk, cap * 8, bigger, newCap * 8, cap * 8);
+        copy(chunk, cap * 16, bigger, newCap * 16, cap * 4);
+        copy(chunk, cap * 20, bigger, newCap * 20, cap * 4);
+        return bigger;
+    }
+
+    private static void copy(ByteBuffer from, int fromPos, ByteBuffer to, int toPos, int length) {
+        ByteBuffer src = from.duplicate();
+        src.position(fromPos).limit(fromPos + length);
+        ByteBuffer dst = to.duplicate();
+        dst.position(toPos);
+        dst.put(src);
+    }
+}
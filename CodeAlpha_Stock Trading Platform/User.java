@@ -1,35 +1,127 @@
-public class User {
+public class User implements OrderOwner {
+    // Market orders trade as immediate-or-cancel limits this far through the last price.
+    private static final double MARKET_COLLAR = 0.05;
+
     private String name;
     private double balance;
     private Portfolio portfolio;
+    // Shares committed to open sell orders; cash for open buys is taken out of balance up front.
+    private IntIntMap reservedShares = new IntIntMap();
+    // Kept in whole cents, like the limits it is made of, so it returns to exactly zero.
+    private long reservedCents;
+    // Receives this user's fills from the order books; the user itself unless an engine routes them.
+    private OrderOwner fillTarget = this;
 
     public User(String name, double balance) {
+        this(name, balance, null);
+    }
+
+    /** A user whose portfolio is revalued on every tick of the market's stocks it holds. */
+    public User(String name, double balance, Market market) {
         this.name = name;
         this.balance = balance;
-        this.portfolio = new Portfolio();
+        this.portfolio = new Portfolio(market);
+    }
+
+    void routeFillsThrough(OrderOwner router) {
+        this.fillTarget = router;
+    }
+
+    public String getName() {
+        return name;
     }
 
     public Portfolio getPortfolio() {
         return portfolio;
     }
 
-    public double getBalance() {
+    public synchronized double getBalance() {
         return balance;
     }
 
-    public void buy(Stock stock, int qty) {
-        double cost = stock.getPrice() * qty;
-        if (balance >= cost) {
-            balance -= cost;
-            portfolio.buyStock(stock.getSymbol(), qty, stock.getPrice());
+    /** Cash excluding what open buy orders have reserved; this is what gets persisted. */
+    public synchronized double getSettledCash() {
+        return balance + reservedCents / 100.0;
+    }
+
+    synchronized void restoreCash(double settledCash) {
+        if (reservedCents != 0) throw new IllegalStateException("Cannot restore with open orders");
+        this.balance = settledCash;
+    }
+
+    /**
+     * Buys at market and returns the order id. Orders that fail validation throw
+     * IllegalArgumentException with the reason; nothing is reserved in that case.
+     */
+    public long buy(Stock stock, int qty) {
+        return submit(stock, true, qty, stock.getPrice() * (1 + MARKET_COLLAR), true);
+    }
+
+    public long sell(Stock stock, int qty) {
+        return submit(stock, false, qty, stock.getPrice() * (1 - MARKET_COLLAR), true);
+    }
+
+    /** Places a resting limit order and returns its id. */
+    public long placeLimitOrder(Stock stock, boolean buy, int qty, double price) {
+        return submit(stock, buy, qty, price, false);
+    }
+
+    public boolean cancelOrder(Stock stock, long orderId) {
+        return stock.getOrderBook().cancel(orderId);
+    }
+
+    private long submit(Stock stock, boolean buy, int qty, double price, boolean immediate) {
+        if (qty <= 0) throw new IllegalArgumentException("Quantity must be positive");
+        // Round to the book's cent grid so the reservation matches what the book will refund.
+        long limitCents = Math.max(1, Math.round(price * 100));
+        double limit = limitCents / 100.0;
+        // Reserve before touching the book: fills can arrive on this thread during the call.
+        synchronized (this) {
+            if (buy) {
+                double cost = limit * qty;
+                if (balance < cost) throw new IllegalArgumentException("Insufficient balance");
+                balance -= cost;
+                reservedCents += limitCents * qty;
+            } else {
+                int symbolId = stock.getSymbolId();
+                if (portfolio.getQuantity(symbolId) - reservedShares.get(symbolId, 0) < qty) {
+                    throw new IllegalArgumentException("Insufficient shares");
+                }
+                reservedShares.addTo(symbolId, qty);
+            }
+        }
+        OrderBook book = stock.getOrderBook();
+        long id = immediate ? book.immediateOrCancel(fillTarget, buy, qty, limit) : book.limit(fillTarget, buy, qty, limit);
+        // The order's own fills are on disk before its id is handed back.
+        portfolio.syncTradeLog();
+        return id;
+    }
+
+    @Override
+    public synchronized void onFill(long orderId, int symbolId, boolean buy, int qty, double fillPrice, double limitPrice) {
+        if (buy) {
+            // Filled at or below the limit that was reserved; hand back the difference.
+            balance += (limitPrice - fillPrice) * qty;
+            reservedCents -= cents(limitPrice) * qty;
+            portfolio.buyStock(symbolId, qty, fillPrice);
+        } else {
+            reservedShares.addTo(symbolId, -qty);
+            balance += fillPrice * qty;
+            portfolio.sellStock(symbolId, qty, fillPrice);
+        }
+    }
+
+    @Override
+    public synchronized void onCancel(long orderId, int symbolId, boolean buy, int qty, double limitPrice) {
+        if (buy) {
+            balance += limitPrice * qty;
+            reservedCents -= cents(limitPrice) * qty;
         } else {
-            System.out.println("Insufficient balance!");
+            reservedShares.addTo(symbolId, -qty);
         }
     }
 
-    public void sell(Stock stock, int qty) {
-        balance += stock.getPrice() * qty;
-        portfolio.sellStock(stock.getSymbol(), qty, stock.getPrice());
+    private static long cents(double price) {
+        return Math.round(price * 100);
     }
 }
-
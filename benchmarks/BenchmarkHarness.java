@@ -0,0 +1,276 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measurement loop shared by {@code HotelBenchmark} and {@code TradingBenchmark}, in the spirit
+ * of JMH (warm-up, timed measurement, per-thread latency samples, bytes allocated per op as with
+ * its gc profiler) without needing a build tool.
+ *
+ * Each benchmark compiles against its module's classes, e.g. for the trading engine:
+ * <pre>
+ *   javac -d out "../CodeAlpha_Stock Trading Platform"/*.java
+ *   javac -cp out -d out BenchmarkHarness.java TradingBenchmark.java
+ *   java -Xmx4g -cp out TradingBenchmark --baseline trading-baseline.json
+ * </pre>
+ *
+ * Common options: [--threads 1,4] [--warmup 3] [--time 5] [--out bench.json]
+ * [--baseline file.json] [--tolerance 0.2]. Results are written as a JSON object that records
+ * the machine and settings next to the results. With --baseline, results are compared to a
+ * previous run and the exit status is 2 if any benchmark lost more than the tolerance in ops/s,
+ * allocates noticeably more per op, or has nothing in the baseline to compare against.
+ */
+public final class BenchmarkHarness {
+    private static final int LATENCY_SAMPLES = 1 << 20;
+
+    public interface Op {
+        void run(ThreadLocalRandom rnd, int thread) throws Exception;
+    }
+
+    /** One benchmark at one data-set size and thread count. */
+    public static final class Result {
+        final String benchmark;
+        final String params; // "name":value pairs identifying the data set, already in JSON form
+        final int threads;
+        long ops;
+        double opsPerSec, p50, p99, p999, max, allocBytesPerOp;
+
+        Result(String benchmark, String params, int threads) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.threads = threads;
+        }
+
+        String key() {
+            return key(benchmark, params, threads);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"benchmark\":\"%s\",%s,\"threads\":%d,\"ops\":%d,\"opsPerSec\":%.1f,\"p50Us\":%.2f,"
+                            + "\"p99Us\":%.2f,\"p999Us\":%.2f,\"maxUs\":%.2f,\"allocBytesPerOp\":%.1f}",
+                    benchmark, params, threads, ops, opsPerSec, p50, p99, p999, max, allocBytesPerOp);
+        }
+
+        private static String key(String benchmark, String params, int threads) {
+            return benchmark + " " + params.replace("\"", "") + ",threads:" + threads;
+        }
+    }
+
+    private final Map<String, String> opts;
+    private final int[] threadCounts;
+    private final long warmupMillis;
+    private final long timeMillis;
+    private final List<Result> results = new ArrayList<>();
+
+    /** Parses {@code --name value} pairs; {@link #option} reads the benchmark's own ones. */
+    public BenchmarkHarness(String[] args) {
+        opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        threadCounts = ints(option("threads", "1," + Runtime.getRuntime().availableProcessors()));
+        warmupMillis = (long) (Double.parseDouble(option("warmup", "3")) * 1000);
+        timeMillis = (long) (Double.parseDouble(option("time", "5")) * 1000);
+    }
+
+    public String option(String name, String defaultValue) {
+        return opts.getOrDefault(name, defaultValue);
+    }
+
+    public int[] threadCounts() {
+        return threadCounts;
+    }
+
+    public int maxThreads() {
+        return Arrays.stream(threadCounts).max().orElse(1);
+    }
+
+    /** Data-set parameters in the form results carry them, e.g. {@code params("rooms", 10, "skew", 0.5)}. */
+    public static String params(Object... namesAndValues) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) sb.append(',');
+            Object value = namesAndValues[i + 1];
+            sb.append('"').append(namesAndValues[i]).append("\":")
+                    .append(value instanceof Double ? String.format(Locale.ROOT, "%.2f", value) : value);
+        }
+        return sb.toString();
+    }
+
+    /** Measures {@code op} at every configured thread count. */
+    public void run(String name, String params, Op op) throws Exception {
+        for (int threads : threadCounts) run(name, params, op, threads);
+    }
+
+    /** Measures {@code op} on exactly {@code threads} threads, for operations that are not thread-safe. */
+    public void run(String name, String params, Op op, int threads) throws Exception {
+        measure(op, threads, warmupMillis, new long[threads][], new long[threads], new long[threads]);
+        long[][] samples = new long[threads][];
+        long[] counts = new long[threads];
+        long[] allocated = new long[threads];
+        long elapsed = measure(op, threads, timeMillis, samples, counts, allocated);
+
+        long total = 0;
+        long bytes = 0;
+        int n = 0;
+        for (int t = 0; t < threads; t++) {
+            total += counts[t];
+            bytes += allocated[t];
+            n += (int) Math.min(counts[t], LATENCY_SAMPLES);
+        }
+        long[] all = new long[n];
+        int pos = 0;
+        for (int t = 0; t < threads; t++) {
+            int len = (int) Math.min(counts[t], LATENCY_SAMPLES);
+            System.arraycopy(samples[t], 0, all, pos, len);
+            pos += len;
+        }
+        Arrays.sort(all);
+        Result r = new Result(name, params, threads);
+        r.ops = total;
+        r.opsPerSec = total * 1e9 / elapsed;
+        r.p50 = percentile(all, 0.50);
+        r.p99 = percentile(all, 0.99);
+        r.p999 = percentile(all, 0.999);
+        r.max = all.length == 0 ? 0 : all[all.length - 1] / 1000.0;
+        r.allocBytesPerOp = total == 0 ? 0 : (double) bytes / total;
+        System.out.printf(Locale.ROOT, "%-30s %-40s threads=%-3d %12.1f ops/s  p50=%9.2fus  p99=%9.2fus  %8.1f B/op%n",
+                name, params.replace("\"", ""), threads, r.opsPerSec, r.p50, r.p99, r.allocBytesPerOp);
+        results.add(r);
+    }
+
+    /**
+     * Runs {@code op} on {@code threads} threads for {@code millis}; returns elapsed nanos.
+     * Bytes allocated by each worker during the timed loop land in {@code allocated}.
+     */
+    private static long measure(Op op, int threads, long millis, long[][] samples, long[] counts, long[] allocated)
+            throws Exception {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        AtomicBoolean stop = new AtomicBoolean();
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long[] lat = new long[LATENCY_SAMPLES];
+                long count = 0;
+                long self = Thread.currentThread().getId();
+                start.await();
+                long bytes0 = mx.getThreadAllocatedBytes(self);
+                while (!stop.get()) {
+                    long t0 = System.nanoTime();
+                    op.run(rnd, id);
+                    lat[(int) (count & (LATENCY_SAMPLES - 1))] = System.nanoTime() - t0;
+                    count++;
+                }
+                allocated[id] = mx.getThreadAllocatedBytes(self) - bytes0;
+                samples[id] = lat;
+                counts[id] = count;
+                return null;
+            }));
+        }
+        start.await();
+        long t0 = System.nanoTime();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Future<?> f : futures) f.get();
+        long elapsed = System.nanoTime() - t0;
+        pool.shutdown();
+        return elapsed;
+    }
+
+    /** Writes the results to --out and, with --baseline, exits with status 2 if the comparison fails. */
+    public void finish() throws IOException {
+        String out = option("out", "bench.json");
+        try (PrintWriter w = new PrintWriter(new FileWriter(out))) {
+            w.println("{");
+            w.printf(Locale.ROOT, "  \"cpus\":%d,\"java\":\"%s\",\"warmupSec\":%.1f,\"timeSec\":%.1f,%n",
+                    Runtime.getRuntime().availableProcessors(), System.getProperty("java.version"),
+                    warmupMillis / 1000.0, timeMillis / 1000.0);
+            w.println("  \"results\":[");
+            for (int i = 0; i < results.size(); i++) {
+                w.println("    " + results.get(i).toJson() + (i + 1 < results.size() ? "," : ""));
+            }
+            w.println("  ]");
+            w.println("}");
+        }
+        System.out.println("Wrote " + results.size() + " results to " + out);
+        String baseline = option("baseline", null);
+        if (baseline != null && !compare(new File(baseline), Double.parseDouble(option("tolerance", "0.2")))) {
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Prints how each result moved against the baseline. Returns false if any result regressed
+     * or has no baseline entry; a baseline taken on a different core count only gets a warning,
+     * since its ops/s are not comparable for the multi-threaded runs. A baseline holds no runs
+     * with more threads than the machine it was taken on had cores, so those are skipped.
+     */
+    private boolean compare(File baselineFile, double tolerance) throws IOException {
+        Pattern line = Pattern.compile("\"benchmark\":\"([^\"]+)\",(.*),\"threads\":(\\d+),"
+                + ".*\"opsPerSec\":([0-9.]+).*\"allocBytesPerOp\":([0-9.]+)");
+        Pattern cpus = Pattern.compile("\"cpus\":(\\d+)");
+        Map<String, double[]> baseline = new HashMap<>();
+        int baselineCpus = -1;
+        for (String text : Files.readAllLines(baselineFile.toPath())) {
+            Matcher m = line.matcher(text);
+            if (m.find()) {
+                baseline.put(Result.key(m.group(1), m.group(2), Integer.parseInt(m.group(3))),
+                        new double[] { Double.parseDouble(m.group(4)), Double.parseDouble(m.group(5)) });
+            } else if ((m = cpus.matcher(text)).find()) {
+                baselineCpus = Integer.parseInt(m.group(1));
+            }
+        }
+        int here = Runtime.getRuntime().availableProcessors();
+        if (baselineCpus != here) {
+            System.out.println("WARNING: " + baselineFile + " was recorded on "
+                    + (baselineCpus < 0 ? "an unknown number of" : Integer.toString(baselineCpus))
+                    + " cpus, this machine has " + here);
+        }
+        int regressions = 0;
+        int unmatched = 0;
+        for (Result r : results) {
+            double[] base = baseline.get(r.key());
+            if (base == null && baselineCpus > 0 && r.threads > baselineCpus) {
+                System.out.printf(Locale.ROOT, "%-10s %s%n", "SKIPPED", r.key());
+                continue;
+            }
+            if (base == null) {
+                unmatched++;
+                System.out.printf(Locale.ROOT, "%-10s %s%n", "NO BASELINE", r.key());
+                continue;
+            }
+            double change = r.opsPerSec / base[0] - 1;
+            // Allocation is deterministic enough that a small absolute slack suffices.
+            boolean slower = change < -tolerance;
+            boolean heavier = r.allocBytesPerOp > base[1] * (1 + tolerance) + 16;
+            if (slower || heavier) regressions++;
+            System.out.printf(Locale.ROOT, "%-10s %-70s %+7.1f%% ops/s  %8.1f -> %8.1f B/op%n",
+                    slower || heavier ? "REGRESSION" : "ok", r.key(), change * 100, base[1], r.allocBytesPerOp);
+        }
+        System.out.println(regressions + " regression(s), " + unmatched + " result(s) without a baseline in " + baselineFile);
+        return regressions == 0 && unmatched == 0;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1000.0;
+    }
+
+    public static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).distinct().toArray();
+    }
+
+    public static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) deleteRecursively(c);
+        f.delete();
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Throughput/latency benchmarks for the Hotel and Storage hot paths, run by {@link BenchmarkHarness}.
+ * Compile against the classes of {@code codealpha_hotelReservationSystem}.
+ *
+ * Usage: java -Xmx4g HotelBenchmark [--rooms 10,1000,10000] [--bookings 1000,100000,1000000]
+ *        [--skew 0.5] plus the harness options
+ *
+ * Each (rooms, bookings) pair gets a synthetic data set ({@link HotelReservationSystem.BenchData})
+ * written straight to binary storage in a temp directory.
+ */
+public class HotelBenchmark {
+    public static void main(String[] args) throws Exception {
+        BenchmarkHarness harness = new BenchmarkHarness(args);
+        int[] roomCounts = BenchmarkHarness.ints(harness.option("rooms", "10,1000,10000"));
+        int[] bookingCounts = BenchmarkHarness.ints(harness.option("bookings", "1000,100000,1000000"));
+        double skew = Double.parseDouble(harness.option("skew", "0.5"));
+
+        for (int rooms : roomCounts) {
+            for (int requested : bookingCounts) {
+                try (HotelReservationSystem.BenchData data = HotelReservationSystem.BenchData.generate(rooms, requested, skew)) {
+                    String params = BenchmarkHarness.params("rooms", rooms, "bookings", data.bookings(), "skew", skew);
+                    for (Map.Entry<String, Callable<?>> e : data.hotelOps().entrySet()) {
+                        harness.run(e.getKey(), params, op(e.getValue()));
+                    }
+                    for (Map.Entry<String, Callable<?>> e : data.storageOps().entrySet()) {
+                        harness.run(e.getKey(), params, op(e.getValue()), 1);
+                    }
+                }
+            }
+        }
+        harness.finish();
+    }
+
+    private static BenchmarkHarness.Op op(Callable<?> call) {
+        return (rnd, thread) -> call.call();
+    }
+}
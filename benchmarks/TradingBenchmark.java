@@ -0,0 +1,127 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Throughput, latency and allocation benchmarks for the trading hot paths, run by
+ * {@link BenchmarkHarness}. Compile against the classes of {@code CodeAlpha_Stock Trading Platform}.
+ *
+ * Usage: java -Xmx4g TradingBenchmark [--symbols 10,1000,100000] [--transactions 1000,1000000]
+ *        [--hot 1] plus the harness options, e.g. --baseline trading-baseline.json
+ *
+ * Each (symbols, transactions) pair gets a synthetic market and, per thread, an account whose
+ * history holds that many fills. Trading runs on the first {@code hot} symbols of the market,
+ * so with several threads and --hot 1 every order contends for one book.
+ */
+public class TradingBenchmark {
+    private static final int HOUSE_SIZE = 1_000_000_000;
+
+    /** Resting liquidity that never runs out, so buy/sell measure matching rather than an empty book. */
+    static class House implements OrderOwner {
+        @Override
+        public void onFill(long orderId, int symbolId, boolean buy, int qty, double fillPrice, double limitPrice) {
+        }
+
+        @Override
+        public void onCancel(long orderId, int symbolId, boolean buy, int qty, double limitPrice) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkHarness harness = new BenchmarkHarness(args);
+        int[] symbolCounts = BenchmarkHarness.ints(harness.option("symbols", "10,1000,100000"));
+        int[] transactionCounts = BenchmarkHarness.ints(harness.option("transactions", "1000,1000000"));
+        int hot = Integer.parseInt(harness.option("hot", "1"));
+        int maxThreads = harness.maxThreads();
+
+        for (int symbols : symbolCounts) {
+            Market market = new Market(MarketClock.SYSTEM);
+            String[] tickers = new String[symbols];
+            for (int i = 0; i < symbols; i++) {
+                tickers[i] = "S" + i;
+                market.addStock(tickers[i], 100 + i % 500);
+            }
+            int traded = Math.min(hot, symbols);
+            House house = new House();
+            for (int i = 0; i < traded; i++) {
+                Stock stock = market.getStockAtSlot(i);
+                stock.getOrderBook().limit(house, true, HOUSE_SIZE, stock.getPrice() - 0.01);
+                stock.getOrderBook().limit(house, false, HOUSE_SIZE, stock.getPrice() + 0.01);
+            }
+            for (int transactions : transactionCounts) {
+                String params = BenchmarkHarness.params("symbols", symbols, "transactions", transactions);
+                File dir = Files.createTempDirectory("trading-bench").toFile();
+                try {
+                    User[] users = new User[maxThreads];
+                    for (int t = 0; t < maxThreads; t++) {
+                        users[t] = new User("bench" + t, 1e12, market);
+                        FileManager.loadPortfolio(users[t], new File(dir, "bench" + t));
+                        fillHistory(users[t], market, transactions);
+                        FileManager.savePortfolio(users[t], new File(dir, "bench" + t));
+                    }
+                    Map<String, BenchmarkHarness.Op> ops = new LinkedHashMap<>();
+                    ops.put("Market.getStock", (rnd, t) -> market.getStock(tickers[rnd.nextInt(symbols)]));
+                    ops.put("User.buy+sell", (rnd, t) -> {
+                        Stock stock = market.getStockAtSlot(rnd.nextInt(traded));
+                        users[t].buy(stock, 1);
+                        users[t].sell(stock, 1);
+                    });
+                    ops.put("Portfolio.buyStock+sellStock", (rnd, t) -> {
+                        int symbolId = market.getStockAtSlot(rnd.nextInt(traded)).getSymbolId();
+                        users[t].getPortfolio().buyStock(symbolId, 1, 100);
+                        users[t].getPortfolio().sellStock(symbolId, 1, 100);
+                    });
+                    ops.put("Portfolio.getMarketValue", (rnd, t) -> users[t].getPortfolio().getMarketValue());
+                    ops.put("valuation.fullScan", (rnd, t) -> scanValue(users[t].getPortfolio(), market));
+                    ops.put("Market.updatePrice", (rnd, t) -> {
+                        int slot = rnd.nextInt(symbols);
+                        market.updatePrice(slot, market.getStockAtSlot(slot).getPrice());
+                    });
+                    for (Map.Entry<String, BenchmarkHarness.Op> e : ops.entrySet()) {
+                        harness.run(e.getKey(), params, e.getValue());
+                    }
+                    for (User user : users) user.getPortfolio().getTradeLog().close();
+                    // The trading runs above grew those histories; persistence gets an account of exactly the stated size.
+                    File saveDir = new File(dir, "saved");
+                    User saved = new User("saved", 1e12, market);
+                    FileManager.loadPortfolio(saved, saveDir);
+                    fillHistory(saved, market, transactions);
+                    harness.run("FileManager.savePortfolio", params, (rnd, t) -> FileManager.savePortfolio(saved, saveDir), 1);
+                    saved.getPortfolio().getTradeLog().close();
+                    harness.run("FileManager.loadPortfolio", params, (rnd, t) -> {
+                        User user = new User("saved", 0);
+                        FileManager.loadPortfolio(user, saveDir);
+                        user.getPortfolio().getTradeLog().close();
+                    }, 1);
+                } finally {
+                    BenchmarkHarness.deleteRecursively(dir);
+                }
+            }
+        }
+        harness.finish();
+    }
+
+    // Builds up a history across up to 1000 symbols: rounds of buying 20 and selling 10, so positions stay open.
+    private static void fillHistory(User user, Market market, int transactions) {
+        Portfolio portfolio = user.getPortfolio();
+        int symbols = Math.min(market.size(), 1000);
+        for (int i = 0; i < transactions; i++) {
+            Stock stock = market.getStockAtSlot(i % symbols);
+            if ((i / symbols) % 2 == 0) {
+                portfolio.buyStock(stock.getSymbolId(), 20, stock.getPrice());
+            } else {
+                portfolio.sellStock(stock.getSymbolId(), 10, stock.getPrice());
+            }
+        }
+    }
+
+    // What displayPortfolio used to do on every call: look up and revalue every holding.
+    private static double scanValue(Portfolio portfolio, Market market) {
+        double total = 0;
+        for (Position position : portfolio.getPositions()) {
+            total += position.getQuantity() * market.getStock(position.getSymbol()).getPrice();
+        }
+        return total;
+    }
+}
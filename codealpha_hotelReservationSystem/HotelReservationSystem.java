@@ -1,392 +1,2979 @@
-import java.io.*;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.*;
-import java.util.stream.Collectors;
-
-
-
-public class HotelReservationSystem {
-    public static void main(String[] args) {
-        CLI cli = new CLI();
-        cli.run();
-    }
-}
-
-// ----------------------- Models -----------------------
-class Room implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private String roomId;
-    private String number;
-    private String category;
-    private double pricePerNight;
-
-    public Room(String roomId, String number, String category, double pricePerNight) {
-        this.roomId = roomId;
-        this.number = number;
-        this.category = category;
-        this.pricePerNight = pricePerNight;
-    }
-
-    public String getRoomId() { return roomId; }
-    public String getNumber() { return number; }
-    public String getCategory() { return category; }
-    public double getPricePerNight() { return pricePerNight; }
-
-    @Override
-    public String toString() {
-        return String.format("Room[number=%s, category=%s, price=%.2f, id=%s]", number, category, pricePerNight, roomId);
-    }
-}
-
-class Booking implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private String bookingId;
-    private String roomId;
-    private String guestName;
-    private String guestEmail;
-    private LocalDate startDate;
-    private LocalDate endDate; // exclusive
-    private double totalPrice;
-    private boolean paid;
-    private Date createdAt;
-
-    public Booking(String bookingId, String roomId, String guestName, String guestEmail, LocalDate startDate, LocalDate endDate, double totalPrice, boolean paid) {
-        this.bookingId = bookingId;
-        this.roomId = roomId;
-        this.guestName = guestName;
-        this.guestEmail = guestEmail;
-        this.startDate = startDate;
-        this.endDate = endDate;
-        this.totalPrice = totalPrice;
-        this.paid = paid;
-        this.createdAt = new Date();
-    }
-
-    public String getBookingId() { return bookingId; }
-    public String getRoomId() { return roomId; }
-    public String getGuestName() { return guestName; }
-    public String getGuestEmail() { return guestEmail; }
-    public LocalDate getStartDate() { return startDate; }
-    public LocalDate getEndDate() { return endDate; }
-    public double getTotalPrice() { return totalPrice; }
-    public boolean isPaid() { return paid; }
-    public void setPaid(boolean paid) { this.paid = paid; }
-    public Date getCreatedAt() { return createdAt; }
-
-    @Override
-    public String toString() {
-        return String.format("Booking[id=%s, roomId=%s, guest=%s, email=%s, %s -> %s, total=%.2f, paid=%s]",
-                bookingId, roomId, guestName, guestEmail, startDate, endDate, totalPrice, paid);
-    }
-}
-
-// ----------------------- Persistence -----------------------
-class Storage {
-    private static final String ROOMS_FILE = "rooms.dat";
-    private static final String BOOKINGS_FILE = "bookings.dat";
-
-    public static List<Room> loadRooms() {
-        List<Room> rooms = (List<Room>) readObjectFromFile(ROOMS_FILE);
-        if (rooms == null) {
-            rooms = createSampleRooms();
-            saveRooms(rooms);
-        }
-        return rooms;
-    }
-
-    public static void saveRooms(List<Room> rooms) {
-        writeObjectToFile(ROOMS_FILE, rooms);
-    }
-
-    public static List<Booking> loadBookings() {
-        List<Booking> bookings = (List<Booking>) readObjectFromFile(BOOKINGS_FILE);
-        if (bookings == null) bookings = new ArrayList<>();
-        return bookings;
-    }
-
-    public static void saveBookings(List<Booking> bookings) {
-        writeObjectToFile(BOOKINGS_FILE, bookings);
-    }
-
-    private static Object readObjectFromFile(String filename) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            return ois.readObject();
-        } catch (FileNotFoundException e) {
-            return null;
-        } catch (Exception e) {
-            System.err.println("Failed to read " + filename + ": " + e.getMessage());
-            return null;
-        }
-    }
-
-    private static void writeObjectToFile(String filename, Object obj) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(obj);
-        } catch (Exception e) {
-            System.err.println("Failed to write " + filename + ": " + e.getMessage());
-        }
-    }
-
-    private static List<Room> createSampleRooms() {
-        List<Room> sample = new ArrayList<>();
-        sample.add(new Room(UUID.randomUUID().toString(), "101", "Standard", 1500.0));
-        sample.add(new Room(UUID.randomUUID().toString(), "102", "Standard", 1600.0));
-        sample.add(new Room(UUID.randomUUID().toString(), "201", "Deluxe", 1800.0));
-        sample.add(new Room(UUID.randomUUID().toString(), "202", "Deluxe", 1850.0));
-        sample.add(new Room(UUID.randomUUID().toString(), "301", "Suite", 15000.0));
-        return sample;
-    }
-}
-
-// ----------------------- Business Logic -----------------------
-class Hotel {
-    private List<Room> rooms;
-    private List<Booking> bookings;
-
-    public Hotel() {
-        this.rooms = Storage.loadRooms();
-        this.bookings = Storage.loadBookings();
-    }
-
-    public List<String> listCategories() {
-        return rooms.stream().map(Room::getCategory).distinct().sorted().collect(Collectors.toList());
-    }
-
-    public List<Room> searchAvailableRooms(LocalDate start, LocalDate end, String category) {
-        List<Room> result = new ArrayList<>();
-        for (Room r : rooms) {
-            if (category != null && !category.isEmpty() && !r.getCategory().equalsIgnoreCase(category)) continue;
-            boolean blocked = false;
-            for (Booking b : bookings) {
-                if (b.getRoomId().equals(r.getRoomId()) && datesOverlap(b.getStartDate(), b.getEndDate(), start, end)) {
-                    blocked = true;
-                    break;
-                }
-            }
-            if (!blocked) result.add(r);
-        }
-        return result;
-    }
-
-    private boolean datesOverlap(LocalDate aStart, LocalDate aEnd, LocalDate bStart, LocalDate bEnd) {
-        return (aStart.isBefore(bEnd)) && (bStart.isBefore(aEnd)); // end exclusive
-    }
-
-    public double calculatePrice(Room room, LocalDate start, LocalDate end) {
-        long nights = java.time.temporal.ChronoUnit.DAYS.between(start, end);
-        if (nights <= 0) throw new IllegalArgumentException("End date must be after start date");
-        return Math.round(room.getPricePerNight() * nights * 100.0) / 100.0;
-    }
-
-    public Booking createBooking(String roomId, String guestName, String guestEmail, LocalDate start, LocalDate end) {
-        Room room = rooms.stream().filter(r -> r.getRoomId().equals(roomId)).findFirst().orElse(null);
-        if (room == null) throw new IllegalArgumentException("Room not found");
-        // check overlap for this room
-        for (Booking b : bookings) {
-            if (b.getRoomId().equals(roomId) && datesOverlap(b.getStartDate(), b.getEndDate(), start, end)) {
-                throw new IllegalArgumentException("Room not available for the selected dates");
-            }
-        }
-        double total = calculatePrice(room, start, end);
-        Booking booking = new Booking(UUID.randomUUID().toString(), roomId, guestName, guestEmail, start, end, total, false);
-        bookings.add(booking);
-        Storage.saveBookings(bookings);
-        return booking;
-    }
-
-    public boolean cancelBooking(String bookingId) {
-        Iterator<Booking> it = bookings.iterator();
-        while (it.hasNext()) {
-            Booking b = it.next();
-            if (b.getBookingId().equals(bookingId)) {
-                it.remove();
-                Storage.saveBookings(bookings);
-                return true;
-            }
-        }
-        return false;
-    }
-
-    public List<Booking> findBookingsByEmail(String email) {
-        return bookings.stream().filter(b -> b.getGuestEmail().equalsIgnoreCase(email)).collect(Collectors.toList());
-    }
-
-    public Booking getBooking(String bookingId) {
-        return bookings.stream().filter(b -> b.getBookingId().equals(bookingId)).findFirst().orElse(null);
-    }
-
-    public List<Room> getRooms() { return rooms; }
-}
-
-// ----------------------- Payment Simulation -----------------------
-class PaymentGatewaySimulator {
-    private final double successRate;
-    private final Random rnd = new Random();
-
-    public PaymentGatewaySimulator(double successRate) { this.successRate = successRate; }
-
-    public PaymentResult charge(double amount) {
-        boolean success = rnd.nextDouble() < successRate;
-        String txnId = UUID.randomUUID().toString();
-        String message = success ? "Payment successful" : "Payment failed (simulated)";
-        return new PaymentResult(success, txnId, amount, message);
-    }
-}
-
-class PaymentResult {
-    public final boolean success;
-    public final String transactionId;
-    public final double amount;
-    public final String message;
-
-    public PaymentResult(boolean success, String transactionId, double amount, String message) {
-        this.success = success; this.transactionId = transactionId; this.amount = amount; this.message = message;
-    }
-}
-
-// ----------------------- CLI / UI -----------------------
-class CLI {
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    private final Scanner scanner = new Scanner(System.in);
-    private final Hotel hotel = new Hotel();
-    private final PaymentGatewaySimulator gateway = new PaymentGatewaySimulator(0.9);
-
-    public void run() {
-        System.out.println("Welcome to the Hotel Reservation System (Java CLI)");
-        while (true) {
-            System.out.println("\nMenu:\n1) Search rooms\n2) Book a room\n3) Cancel booking\n4) View my bookings\n5) List room categories\n6) Exit");
-            System.out.print("Select an option: ");
-            String choice = scanner.nextLine().trim();
-            try {
-                switch (choice) {
-                    case "1": cmdSearch(); break;
-                    case "2": cmdBook(); break;
-                    case "3": cmdCancel(); break;
-                    case "4": cmdViewBookings(); break;
-                    case "5": cmdListCategories(); break;
-                    case "6": System.out.println("Goodbye!"); return;
-                    default: System.out.println("Invalid option");
-                }
-            } catch (Exception e) {
-                System.out.println("Error: " + e.getMessage());
-            }
-        }
-    }
-
-    private void cmdListCategories() {
-        List<String> cats = hotel.listCategories();
-        System.out.println("Available categories:");
-        cats.forEach(c -> System.out.println("- " + c));
-    }
-
-    private void cmdSearch() {
-        LocalDate start = readDate("Enter check-in date (yyyy-MM-dd): ");
-        LocalDate end = readDate("Enter check-out date (yyyy-MM-dd): ");
-        System.out.print("Category (leave blank for any): ");
-        String cat = scanner.nextLine().trim();
-        if (cat.isEmpty()) cat = null;
-        List<Room> available = hotel.searchAvailableRooms(start, end, cat);
-        if (available.isEmpty()) {
-            System.out.println("No rooms available for the selected criteria.");
-            return;
-        }
-        System.out.println("Available rooms:");
-        for (int i = 0; i < available.size(); i++) {
-            Room r = available.get(i);
-            System.out.printf("%d) Number: %s, Category: %s, Price/night: %.2f, RoomID: %s\n", i+1, r.getNumber(), r.getCategory(), r.getPricePerNight(), r.getRoomId());
-        }
-    }
-
-    private void cmdBook() {
-        LocalDate start = readDate("Enter check-in date (yyyy-MM-dd): ");
-        LocalDate end = readDate("Enter check-out date (yyyy-MM-dd): ");
-        System.out.print("Category (leave blank for any): ");
-        String cat = scanner.nextLine().trim();
-        if (cat.isEmpty()) cat = null;
-        List<Room> available = hotel.searchAvailableRooms(start, end, cat);
-        if (available.isEmpty()) {
-            System.out.println("No rooms available for those dates/category.");
-            return;
-        }
-        System.out.println("Select a room by number:");
-        for (int i = 0; i < available.size(); i++) {
-            Room r = available.get(i);
-            System.out.printf("%d) %s - %s - %.2f\n", i+1, r.getNumber(), r.getCategory(), r.getPricePerNight());
-        }
-        int idx = readInt("Choice: ", 1, available.size()) - 1;
-        Room chosen = available.get(idx);
-        System.out.print("Guest name: ");
-        String name = scanner.nextLine().trim();
-        System.out.print("Guest email: ");
-        String email = scanner.nextLine().trim();
-
-        double price = hotel.calculatePrice(chosen, start, end);
-        System.out.printf("Total price: %.2f\n", price);
-        System.out.print("Proceed to payment? (yes/no): ");
-        String proceed = scanner.nextLine().trim().toLowerCase();
-        if (!proceed.equals("yes") && !proceed.equals("y")) {
-            System.out.println("Booking cancelled by user.");
-            return;
-        }
-        PaymentResult res = gateway.charge(price);
-        System.out.println(res.message + " (txn: " + res.transactionId + ")");
-        if (!res.success) {
-            System.out.println("Payment failed. Booking not completed.");
-            return;
-        }
-        Booking booking = hotel.createBooking(chosen.getRoomId(), name, email, start, end);
-        booking.setPaid(true);
-        Storage.saveBookings(hotel.findBookingsByEmail(email)); // ensure persistence
-        System.out.println("Booking successful! ID: " + booking.getBookingId());
-    }
-
-    private void cmdCancel() {
-        System.out.print("Enter booking ID to cancel: ");
-        String id = scanner.nextLine().trim();
-        boolean ok = hotel.cancelBooking(id);
-        if (ok) System.out.println("Booking cancelled."); else System.out.println("Booking not found.");
-    }
-
-    private void cmdViewBookings() {
-        System.out.print("Enter your email to view bookings: ");
-        String email = scanner.nextLine().trim();
-        List<Booking> bs = hotel.findBookingsByEmail(email);
-        if (bs.isEmpty()) {
-            System.out.println("No bookings found for " + email);
-            return;
-        }
-        System.out.println("Bookings:");
-        for (Booking b : bs) {
-            System.out.println(b);
-        }
-    }
-
-    private LocalDate readDate(String prompt) {
-        while (true) {
-            System.out.print(prompt);
-            String line = scanner.nextLine().trim();
-            try {
-                return LocalDate.parse(line, DATE_FORMAT);
-            } catch (DateTimeParseException e) {
-                System.out.println("Invalid date format. Use yyyy-MM-dd.");
-            }
-        }
-    }
-
-    private int readInt(String prompt, int min, int max) {
-        while (true) {
-            System.out.print(prompt);
-            String line = scanner.nextLine().trim();
-            try {
-                int v = Integer.parseInt(line);
-                if (v < min || v > max) throw new NumberFormatException();
-                return v;
-            } catch (NumberFormatException e) {
-                System.out.printf("Enter a number between %d and %d.\n", min, max);
-            }
-        }
-    }
-}
-
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+
+public class HotelReservationSystem {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            Hotel hotel = new Hotel();
+            BookingPipeline pipeline = new BookingPipeline(hotel, new PaymentGatewaySimulator(0.9), 60 * 1000, 30 * 1000);
+            HttpService service = new HttpService(hotel, pipeline, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                service.stop();
+                try {
+                    hotel.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close storage: " + e.getMessage());
+                }
+            }));
+            service.start();
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--import")) {
+            try (Hotel hotel = new Hotel()) {
+                int imported = new BookingImporter(hotel, 1000).importFile(new File(args[1]));
+                System.out.println("Imported " + imported + " bookings from " + args[1]);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Import failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        try (CLI cli = new CLI()) {
+            cli.run();
+        }
+    }
+
+    /**
+     * Synthetic rooms and non-overlapping bookings written straight to binary storage in a temp
+     * directory, with a {@link Hotel} opened over them; the data set behind {@code HotelBenchmark}.
+     * It lives here so the benchmark reaches this file's classes through their public host.
+     * Skew 0 spreads stays evenly over the horizon; higher values crowd bookings and searches into
+     * the near term.
+     */
+    static final class BenchData implements Closeable {
+        private static final String[] CATEGORIES = {"Standard", "Deluxe", "Suite", "Family", "Penthouse"};
+        private static final LocalDate BASE = LocalDate.now().plusDays(1);
+        private static final int MAX_STAY = 7;
+
+        private final File dir;
+        private final List<Room> rooms = new ArrayList<>();
+        private final String[] emails;
+        private final int horizonDays;
+        private final double skew;
+        private BookingSnapshot snapshot;
+        private Storage storage;
+        private Hotel hotel;
+
+        private BenchData(File dir, int roomCount, int bookingCount, double skew) {
+            this.dir = dir;
+            this.skew = skew;
+            this.emails = new String[Math.max(1, bookingCount / 5)];
+            for (int i = 0; i < emails.length; i++) emails[i] = "guest" + i + "@example.com";
+            // enough nights for every stay (average MAX_STAY / 2 + 1) with ~50% headroom so random placement converges,
+            // but no further out than the hotel books; large requests on few rooms then fall short
+            this.horizonDays = (int) Math.min(Hotel.BOOKING_HORIZON_DAYS - MAX_STAY - 1,
+                    Math.max(365, (long) bookingCount * (MAX_STAY / 2 + 1) * 3 / 2 / roomCount));
+            Random rnd = new Random(42);
+            for (int i = 0; i < roomCount; i++) {
+                String category = CATEGORIES[i % CATEGORIES.length];
+                rooms.add(new Room(UUID.randomUUID().toString(), String.valueOf(100 + i), category, 1000 + rnd.nextInt(9000)));
+            }
+        }
+
+        static BenchData generate(int roomCount, int bookingCount, double skew) throws IOException {
+            BenchData d = new BenchData(Files.createTempDirectory("hotel-bench").toFile(), roomCount, bookingCount, skew);
+            try {
+                Random rnd = new Random(7);
+                BitSet[] taken = new BitSet[roomCount];
+                for (int i = 0; i < roomCount; i++) taken[i] = new BitSet(d.horizonDays + MAX_STAY);
+                List<Booking> bookings = new ArrayList<>(bookingCount);
+                int attempts = 0;
+                while (bookings.size() < bookingCount && attempts++ < bookingCount * 20) {
+                    int room = rnd.nextInt(roomCount);
+                    int start = d.dayOffset(rnd.nextDouble());
+                    int nights = 1 + rnd.nextInt(MAX_STAY);
+                    int clash = taken[room].nextSetBit(start);
+                    if (clash >= 0 && clash < start + nights) continue;
+                    taken[room].set(start, start + nights);
+                    Room r = d.rooms.get(room);
+                    bookings.add(new Booking(UUID.randomUUID().toString(), r.getRoomId(), "Guest", d.emails[rnd.nextInt(d.emails.length)],
+                            BASE.plusDays(start), BASE.plusDays(start + nights), r.getPricePerNight() * nights, rnd.nextBoolean()));
+                }
+                d.snapshot = new BookingSnapshot(0, bookings);
+                new Storage(d.dir).saveRooms(d.rooms);
+                BinaryStore.writeBookings(new File(d.dir, Storage.BOOKINGS_FILE), d.snapshot);
+                d.storage = new Storage(d.dir);
+                d.hotel = new Hotel(d.storage);
+                return d;
+            } catch (IOException | RuntimeException e) {
+                try {
+                    d.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+
+        /** Bookings actually placed; may fall short of the request when dates are heavily skewed. */
+        int bookings() {
+            return snapshot.bookings.size();
+        }
+
+        /** Hotel operations, safe to run from several threads at once. */
+        Map<String, Callable<?>> hotelOps() {
+            Map<String, Callable<?>> ops = new LinkedHashMap<>();
+            ops.put("searchAvailableRooms", () -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                LocalDate start = randomDate(rnd);
+                return hotel.searchAvailableRooms(start, start.plusDays(1 + rnd.nextInt(MAX_STAY)),
+                        rnd.nextBoolean() ? null : CATEGORIES[rnd.nextInt(CATEGORIES.length)]);
+            });
+            ops.put("findBookingsByEmail", () -> hotel.findBookingsByEmail(randomEmail(ThreadLocalRandom.current())));
+            ops.put("createBooking", () -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                LocalDate start = randomDate(rnd);
+                try {
+                    return hotel.createBooking(randomRoom(rnd), "Bench Guest", randomEmail(rnd), start,
+                            start.plusDays(1 + rnd.nextInt(MAX_STAY)));
+                } catch (RoomUnavailableException taken) {
+                    return null; // a rejected booking is still a full overlap check
+                }
+            });
+            return ops;
+        }
+
+        /** Whole-file storage operations; each run reads or writes the full snapshot, one thread at a time. */
+        Map<String, Callable<?>> storageOps() {
+            File file = new File(dir, Storage.BOOKINGS_FILE);
+            File copy = new File(dir, "bench-copy.bin");
+            Map<String, Callable<?>> ops = new LinkedHashMap<>();
+            ops.put("BinaryStore.writeBookings", () -> {
+                BinaryStore.writeBookings(copy, snapshot);
+                return null;
+            });
+            ops.put("BinaryStore.readBookings", () -> BinaryStore.readBookings(file));
+            ops.put("Storage.loadBookings", () -> {
+                Storage fresh = new Storage(dir);
+                try {
+                    return fresh.loadBookings();
+                } finally {
+                    fresh.close();
+                }
+            });
+            return ops;
+        }
+
+        /** Maps a uniform draw to a day offset; skew > 0 pulls days toward the start of the horizon. */
+        private int dayOffset(double u) {
+            return (int) (horizonDays * Math.pow(u, 1 + skew * 3));
+        }
+
+        private LocalDate randomDate(ThreadLocalRandom rnd) { return BASE.plusDays(dayOffset(rnd.nextDouble())); }
+
+        private String randomRoom(ThreadLocalRandom rnd) { return rooms.get(rnd.nextInt(rooms.size())).getRoomId(); }
+
+        private String randomEmail(ThreadLocalRandom rnd) { return emails[rnd.nextInt(emails.length)]; }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (hotel != null) hotel.close();
+                else if (storage != null) storage.close();
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+
+        private static void deleteRecursively(File f) {
+            File[] children = f.listFiles();
+            if (children != null) for (File c : children) deleteRecursively(c);
+            f.delete();
+        }
+    }
+}
+
+// ----------------------- Models -----------------------
+class Room implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String roomId;
+    private String number;
+    private String category;
+    private double pricePerNight;
+
+    public Room(String roomId, String number, String category, double pricePerNight) {
+        this.roomId = roomId;
+        this.number = number;
+        this.category = category;
+        this.pricePerNight = pricePerNight;
+    }
+
+    public String getRoomId() { return roomId; }
+    public String getNumber() { return number; }
+    public String getCategory() { return category; }
+    public double getPricePerNight() { return pricePerNight; }
+
+    @Override
+    public String toString() {
+        return String.format("Room[number=%s, category=%s, price=%.2f, id=%s]", number, category, pricePerNight, roomId);
+    }
+}
+
+/** Anything that occupies a room for [startDate, endDate): a confirmed booking or a tentative hold. */
+interface Stay {
+    String getRoomId();
+    LocalDate getStartDate();
+    LocalDate getEndDate();
+}
+
+class Booking implements Serializable, Stay {
+    private static final long serialVersionUID = 1L;
+    private String bookingId;
+    private String roomId;
+    private String guestName;
+    private String guestEmail;
+    private LocalDate startDate;
+    private LocalDate endDate; // exclusive
+    private double totalPrice;
+    private volatile boolean paid;
+    private Date createdAt;
+
+    public Booking(String bookingId, String roomId, String guestName, String guestEmail, LocalDate startDate, LocalDate endDate, double totalPrice, boolean paid) {
+        this(bookingId, roomId, guestName, guestEmail, startDate, endDate, totalPrice, paid, new Date());
+    }
+
+    Booking(String bookingId, String roomId, String guestName, String guestEmail, LocalDate startDate, LocalDate endDate, double totalPrice, boolean paid, Date createdAt) {
+        this.bookingId = bookingId;
+        this.roomId = roomId;
+        this.guestName = guestName;
+        this.guestEmail = guestEmail;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.totalPrice = totalPrice;
+        this.paid = paid;
+        this.createdAt = createdAt;
+    }
+
+    public String getBookingId() { return bookingId; }
+    public String getRoomId() { return roomId; }
+    public String getGuestName() { return guestName; }
+    public String getGuestEmail() { return guestEmail; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getEndDate() { return endDate; }
+    public double getTotalPrice() { return totalPrice; }
+    public boolean isPaid() { return paid; }
+    public void setPaid(boolean paid) { this.paid = paid; }
+    public Date getCreatedAt() { return createdAt; }
+
+    @Override
+    public String toString() {
+        return String.format("Booking[id=%s, roomId=%s, guest=%s, email=%s, %s -> %s, total=%.2f, paid=%s]",
+                bookingId, roomId, guestName, guestEmail, startDate, endDate, totalPrice, paid);
+    }
+}
+
+/** A tentative, in-memory claim on a room while payment is in flight. Expires unless confirmed. */
+class RoomHold implements Stay {
+    private final String holdId;
+    private final String roomId;
+    private final String guestName;
+    private final String guestEmail;
+    private final LocalDate startDate;
+    private final LocalDate endDate; // exclusive
+    private final double totalPrice;
+    private final long expiresAtMillis;
+
+    public RoomHold(String holdId, String roomId, String guestName, String guestEmail, LocalDate startDate, LocalDate endDate, double totalPrice, long expiresAtMillis) {
+        this.holdId = holdId;
+        this.roomId = roomId;
+        this.guestName = guestName;
+        this.guestEmail = guestEmail;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.totalPrice = totalPrice;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getHoldId() { return holdId; }
+    public String getRoomId() { return roomId; }
+    public String getGuestName() { return guestName; }
+    public String getGuestEmail() { return guestEmail; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getEndDate() { return endDate; }
+    public double getTotalPrice() { return totalPrice; }
+    public boolean isExpired(long nowMillis) { return nowMillis >= expiresAtMillis; }
+
+    @Override
+    public String toString() {
+        return String.format("RoomHold[id=%s, roomId=%s, %s -> %s, total=%.2f]", holdId, roomId, startDate, endDate, totalPrice);
+    }
+}
+
+/**
+ * The request was valid but the room is already taken for some of its nights. Extends
+ * IllegalArgumentException so callers that only report the message need not tell the two apart.
+ */
+class RoomUnavailableException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    RoomUnavailableException(String message) {
+        super(message);
+    }
+}
+
+/** A hold lapsed before it could be confirmed; its nights may have been booked by someone else since. */
+class HoldExpiredException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    HoldExpiredException(String message) {
+        super(message);
+    }
+}
+
+// ----------------------- Metrics -----------------------
+/**
+ * Process-wide counters and latency histograms. Off unless started with -Dhotel.metrics=true;
+ * ENABLED is a static final, so when off the JIT drops the instrumentation entirely. Recording
+ * never allocates. -Dhotel.metrics.logSeconds=N also prints a summary line every N seconds.
+ */
+final class Metrics {
+    static final boolean ENABLED = Boolean.getBoolean("hotel.metrics");
+
+    static final LatencyHistogram SEARCH = new LatencyHistogram("hotel.search");
+    static final LatencyHistogram CREATE = new LatencyHistogram("hotel.create");
+    static final LatencyHistogram CREATE_BATCH = new LatencyHistogram("hotel.createBatch");
+    static final LatencyHistogram CONFIRM_HOLD = new LatencyHistogram("hotel.confirmHold");
+    static final LatencyHistogram CANCEL = new LatencyHistogram("hotel.cancel");
+    static final LatencyHistogram MARK_PAID = new LatencyHistogram("hotel.markPaid");
+    static final LatencyHistogram FIND_BY_EMAIL = new LatencyHistogram("hotel.findByEmail");
+    static final LatencyHistogram JOURNAL_APPEND = new LatencyHistogram("storage.journalAppend");
+    static final LatencyHistogram JOURNAL_SYNC = new LatencyHistogram("storage.journalSync");
+    static final LatencyHistogram SNAPSHOT_WRITE = new LatencyHistogram("storage.snapshotWrite");
+    static final LatencyHistogram LOAD = new LatencyHistogram("storage.load");
+    static final LatencyHistogram PAYMENT = new LatencyHistogram("payment.charge");
+    private static final LatencyHistogram[] ALL = {SEARCH, CREATE, CREATE_BATCH, CONFIRM_HOLD, CANCEL, MARK_PAID, FIND_BY_EMAIL,
+            JOURNAL_APPEND, JOURNAL_SYNC, SNAPSHOT_WRITE, LOAD, PAYMENT};
+
+    static final LongAdder BYTES_WRITTEN = new LongAdder();
+    static final LongAdder BOOKINGS = new LongAdder();
+    static final LongAdder PAYMENTS_DECLINED = new LongAdder();
+
+    private Metrics() {}
+
+    /** Start timestamp for {@link LatencyHistogram#recordSince}; free when metrics are off. */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    static String dump() {
+        if (!ENABLED) return "Metrics are disabled (start with -Dhotel.metrics=true)" + System.lineSeparator();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "bookings=%d bytesWritten=%d paymentsDeclined=%d%n",
+                BOOKINGS.sum(), BYTES_WRITTEN.sum(), PAYMENTS_DECLINED.sum()));
+        sb.append(String.format(Locale.ROOT, "%-22s %10s %10s %10s %10s %10s%n", "operation", "count", "mean(us)", "p50(us)", "p99(us)", "max(us)"));
+        for (LatencyHistogram h : ALL) {
+            long n = h.count();
+            if (n == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%-22s %10d %10.1f %10.1f %10.1f %10.1f%n", h.name(), n,
+                    h.mean() / 1e3, h.percentile(0.50) / 1e3, h.percentile(0.99) / 1e3, h.max() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    static {
+        long seconds = Long.getLong("hotel.metrics.logSeconds", 0);
+        if (ENABLED && seconds > 0) {
+            ScheduledExecutorService logger = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-log");
+                t.setDaemon(true);
+                return t;
+            });
+            logger.scheduleAtFixedRate(() -> {
+                StringBuilder line = new StringBuilder("[metrics] bookings=").append(BOOKINGS.sum())
+                        .append(" bytesWritten=").append(BYTES_WRITTEN.sum());
+                for (LatencyHistogram h : ALL) {
+                    if (h.count() == 0) continue;
+                    line.append(' ').append(h.name()).append("{n=").append(h.count())
+                            .append(",p99us=").append(h.percentile(0.99) / 1000).append('}');
+                }
+                System.err.println(line);
+            }, seconds, seconds, TimeUnit.SECONDS);
+        }
+    }
+}
+
+/**
+ * HDR-style log-linear histogram of nanosecond latencies: 64 power-of-two ranges, each split into
+ * 16 linear sub-buckets, so any recorded value is reported within ~6%. Thread-safe and allocation-free.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    String name() { return name; }
+
+    void recordSince(long startNanos) {
+        if (!Metrics.ENABLED) return;
+        record(System.nanoTime() - startNanos);
+    }
+
+    void record(long nanos) {
+        if (!Metrics.ENABLED) return;
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(index(nanos));
+        count.increment();
+        total.add(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) { }
+    }
+
+    private static int index(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int magnitude = 63 - Long.numberOfLeadingZeros(v); // >= SUB_BITS
+        int sub = (int) (v >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Upper bound of the values that land in bucket {@code i}. */
+    private static long upperBound(int i) {
+        if (i < SUB_BUCKETS) return i;
+        int magnitude = i / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = i % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (magnitude - SUB_BITS)) - 1;
+    }
+
+    long count() { return count.sum(); }
+
+    long max() { return max.get(); }
+
+    double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    long percentile(double p) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+}
+
+// ----------------------- Persistence -----------------------
+/**
+ * Rooms are stored in a binary file. Bookings are stored as a binary snapshot plus an append-only
+ * journal of create/cancel/paid records; every change costs one small append instead of a
+ * rewrite of the whole booking list. A background compactor folds the journal into a new snapshot.
+ * Files in the older Java-serialization format ({@code *.dat}) are migrated on first load.
+ * Finished stays can be moved out of the live set into a compressed {@link BookingArchive}.
+ */
+class Storage {
+    static final String ROOMS_FILE = "rooms.bin";
+    static final String BOOKINGS_FILE = "bookings.bin";
+    private static final String LEGACY_ROOMS_FILE = "rooms.dat";
+    private static final String LEGACY_BOOKINGS_FILE = "bookings.dat";
+    private static final String JOURNAL_FILE = "bookings.journal";
+    private static final String ARCHIVE_FILE = "bookings.archive";
+    private static final String ARCHIVE_TOTALS_FILE = "bookings.archive.totals";
+    private static final long COMPACT_THRESHOLD_BYTES = 4L * 1024 * 1024;
+    private static final long COMPACT_INTERVAL_SECONDS = 30;
+
+    private final File dir;
+    private final BookingArchive archive;
+    private BookingJournal journal;
+    private ScheduledFuture<?> compactorTask;
+
+    /**
+     * One daemon thread compacts every open store, so a process with many properties does not need
+     * a thread each. Cancelled tasks are dropped at once so a closed store is not kept reachable.
+     */
+    private static final ScheduledThreadPoolExecutor COMPACTOR = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "booking-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    static { COMPACTOR.setRemoveOnCancelPolicy(true); }
+
+    public Storage(File dir) {
+        this.dir = dir;
+        this.archive = new BookingArchive(new File(dir, ARCHIVE_FILE));
+    }
+
+    public List<Room> loadRooms() {
+        File roomsFile = file(ROOMS_FILE);
+        if (roomsFile.exists()) {
+            try {
+                return BinaryStore.readRooms(roomsFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + roomsFile, e);
+            }
+        }
+        List<Room> rooms = (List<Room>) readObjectFromFile(file(LEGACY_ROOMS_FILE));
+        if (rooms == null) rooms = createSampleRooms();
+        saveRooms(rooms);
+        return rooms;
+    }
+
+    public void saveRooms(List<Room> rooms) {
+        File target = file(ROOMS_FILE);
+        File tmp = file(ROOMS_FILE + ".tmp");
+        try {
+            BinaryStore.writeRooms(tmp, rooms);
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.err.println("Failed to write " + target + ": " + e.getMessage());
+        }
+    }
+
+    /** Loads the latest snapshot, replays the journal tail on top of it and opens the journal for appends. */
+    public synchronized List<Booking> loadBookings() {
+        long t0 = Metrics.start();
+        try {
+            BookingSnapshot snapshot = readSnapshot();
+            if (!file(BOOKINGS_FILE).exists()) {
+                try {
+                    writeSnapshot(snapshot); // one-time migration from the serialized format
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to migrate " + file(LEGACY_BOOKINGS_FILE), e);
+                }
+            }
+            Map<String, Booking> state = new LinkedHashMap<>();
+            for (Booking b : snapshot.bookings) state.put(b.getBookingId(), b);
+            try {
+                long lastSeq = snapshot.seq;
+                lastSeq = Math.max(lastSeq, BookingJournal.replay(file(JOURNAL_FILE + ".1"), snapshot.seq, state));
+                lastSeq = Math.max(lastSeq, BookingJournal.replay(file(JOURNAL_FILE), snapshot.seq, state));
+                journal = new BookingJournal(file(JOURNAL_FILE), lastSeq + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open booking journal", e);
+            }
+            return new ArrayList<>(state.values());
+        } finally {
+            Metrics.LOAD.recordSince(t0);
+        }
+    }
+
+    public long logCreate(Booking b) { return append(BookingJournal.CREATE, b, b.getBookingId()); }
+    public long logCreateAll(List<Booking> batch) {
+        try {
+            return journal.appendBatch(batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write booking journal", e);
+        }
+    }
+    public long logArchived(List<String> bookingIds) {
+        try {
+            return journal.appendArchived(bookingIds);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write booking journal", e);
+        }
+    }
+
+    public BookingArchive archive() { return archive; }
+
+    /**
+     * Adds the saved revenue totals of the archived bookings to {@code into} and returns the
+     * archive length they cover; frames past it were archived after the totals were saved.
+     */
+    public long readArchiveTotals(RevenueAggregates into) {
+        File totals = file(ARCHIVE_TOTALS_FILE);
+        if (!totals.exists()) return 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(totals)))) {
+            long covered = in.readLong();
+            into.read(in);
+            return covered;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + totals, e);
+        }
+    }
+
+    /** Replaces the saved archive totals; written to a temp file and renamed so a crash keeps the old ones. */
+    public void writeArchiveTotals(RevenueAggregates totals, long covered) throws IOException {
+        File target = file(ARCHIVE_TOTALS_FILE);
+        File tmp = file(ARCHIVE_TOTALS_FILE + ".tmp");
+        try (FileOutputStream raw = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw))) {
+            out.writeLong(covered);
+            totals.write(out);
+            out.flush();
+            raw.getFD().sync();
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long logCancel(String bookingId) { return append(BookingJournal.CANCEL, null, bookingId); }
+    public long logPaid(String bookingId) { return append(BookingJournal.PAID, null, bookingId); }
+
+    private long append(byte type, Booking b, String bookingId) {
+        try {
+            return journal.append(type, b, bookingId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write booking journal", e);
+        }
+    }
+
+    /** Blocks until the record with the given sequence number is on disk. Concurrent callers share one fsync. */
+    public void sync(long seq) {
+        try {
+            journal.sync(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync booking journal", e);
+        }
+    }
+
+    /** Stops the compactor and closes the journal and archive; pending appends are forced to disk first. */
+    public synchronized void close() throws IOException {
+        if (compactorTask != null) compactorTask.cancel(false);
+        try {
+            if (journal != null) journal.close();
+        } finally {
+            archive.close();
+        }
+    }
+
+    public synchronized void startCompactor() {
+        if (compactorTask != null) return;
+        compactorTask = COMPACTOR.scheduleWithFixedDelay(() -> {
+            try {
+                if (journal.size() >= COMPACT_THRESHOLD_BYTES || file(JOURNAL_FILE + ".1").exists()) compact();
+            } catch (Exception e) {
+                System.err.println("Booking compaction failed: " + e.getMessage());
+            }
+        }, COMPACT_INTERVAL_SECONDS, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Seals the current journal and folds it into a new snapshot. Works only from files, so it
+     * never has to coordinate with the in-memory state of the hotel.
+     */
+    public void compact() throws IOException {
+        File sealed = file(JOURNAL_FILE + ".1");
+        if (!sealed.exists()) journal.rotate(sealed);
+        BookingSnapshot snapshot = readSnapshot();
+        Map<String, Booking> state = new LinkedHashMap<>();
+        for (Booking b : snapshot.bookings) state.put(b.getBookingId(), b);
+        long lastSeq = Math.max(snapshot.seq, BookingJournal.replay(sealed, snapshot.seq, state));
+        writeSnapshot(new BookingSnapshot(lastSeq, new ArrayList<>(state.values())));
+        Files.deleteIfExists(sealed.toPath());
+    }
+
+    private BookingSnapshot readSnapshot() {
+        File snapshotFile = file(BOOKINGS_FILE);
+        if (snapshotFile.exists()) {
+            try {
+                return BinaryStore.readBookings(snapshotFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + snapshotFile, e);
+            }
+        }
+        Object obj = readObjectFromFile(file(LEGACY_BOOKINGS_FILE));
+        if (obj instanceof BookingSnapshot) return (BookingSnapshot) obj;
+        if (obj instanceof List) return new BookingSnapshot(0, (List<Booking>) obj); // pre-journal format
+        return new BookingSnapshot(0, new ArrayList<>());
+    }
+
+    private void writeSnapshot(BookingSnapshot snapshot) throws IOException {
+        long t0 = Metrics.start();
+        try {
+            File target = file(BOOKINGS_FILE);
+            File tmp = file(BOOKINGS_FILE + ".tmp");
+            BinaryStore.writeBookings(tmp, snapshot);
+            if (Metrics.ENABLED) Metrics.BYTES_WRITTEN.add(tmp.length());
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Metrics.SNAPSHOT_WRITE.recordSince(t0);
+        }
+    }
+
+    private File file(String name) {
+        return new File(dir, name);
+    }
+
+    private static Object readObjectFromFile(File file) {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return ois.readObject();
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            System.err.println("Failed to read " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<Room> createSampleRooms() {
+        List<Room> sample = new ArrayList<>();
+        sample.add(new Room(UUID.randomUUID().toString(), "101", "Standard", 1500.0));
+        sample.add(new Room(UUID.randomUUID().toString(), "102", "Standard", 1600.0));
+        sample.add(new Room(UUID.randomUUID().toString(), "201", "Deluxe", 1800.0));
+        sample.add(new Room(UUID.randomUUID().toString(), "202", "Deluxe", 1850.0));
+        sample.add(new Room(UUID.randomUUID().toString(), "301", "Suite", 15000.0));
+        return sample;
+    }
+}
+
+class BookingSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+    final long seq; // last journal record folded into this snapshot
+    final List<Booking> bookings;
+
+    BookingSnapshot(long seq, List<Booking> bookings) {
+        this.seq = seq;
+        this.bookings = bookings;
+    }
+}
+
+/**
+ * Versioned fixed-width binary encoding for room and booking files. Layout: a 32-byte header
+ * (magic, version, kind, record count, record size, journal sequence, string heap size), the
+ * fixed-width records, then a heap of UTF-8 strings referenced by (offset, length). UUIDs are
+ * stored as two longs, dates as epoch days and prices as long cents. Files are read through a
+ * memory-mapped channel.
+ */
+class BinaryStore {
+    private static final int MAGIC = 0x48525342; // "HRSB"
+    private static final short VERSION = 1;
+    private static final short KIND_ROOMS = 1;
+    private static final short KIND_BOOKINGS = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int ROOM_RECORD_SIZE = 40;
+    private static final int BOOKING_RECORD_SIZE = 80;
+
+    static void writeRooms(File file, List<Room> rooms) throws IOException {
+        StringHeap heap = new StringHeap();
+        try (FileChannel ch = openForWrite(file)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+            buf.position(HEADER_SIZE);
+            for (Room r : rooms) {
+                if (buf.remaining() < ROOM_RECORD_SIZE) drain(ch, buf);
+                putUuid(buf, r.getRoomId());
+                heap.put(buf, r.getNumber());
+                heap.put(buf, r.getCategory());
+                buf.putLong(toCents(r.getPricePerNight()));
+            }
+            finish(ch, buf, heap, KIND_ROOMS, rooms.size(), ROOM_RECORD_SIZE, 0);
+        }
+    }
+
+    static List<Room> readRooms(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int count = readHeader(map, file, KIND_ROOMS, ROOM_RECORD_SIZE);
+            StringReader strings = new StringReader(map, HEADER_SIZE + (long) count * ROOM_RECORD_SIZE);
+            List<Room> rooms = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int p = HEADER_SIZE + i * ROOM_RECORD_SIZE;
+                rooms.add(new Room(getUuid(map, p), strings.get(p + 16), strings.get(p + 24), map.getLong(p + 32) / 100.0));
+            }
+            return rooms;
+        }
+    }
+
+    static void writeBookings(File file, BookingSnapshot snapshot) throws IOException {
+        StringHeap heap = new StringHeap();
+        try (FileChannel ch = openForWrite(file)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+            buf.position(HEADER_SIZE);
+            for (Booking b : snapshot.bookings) {
+                if (buf.remaining() < BOOKING_RECORD_SIZE) drain(ch, buf);
+                putUuid(buf, b.getBookingId());
+                putUuid(buf, b.getRoomId());
+                heap.put(buf, b.getGuestName());
+                heap.put(buf, b.getGuestEmail());
+                buf.putInt(Math.toIntExact(b.getStartDate().toEpochDay()));
+                buf.putInt(Math.toIntExact(b.getEndDate().toEpochDay()));
+                buf.putLong(toCents(b.getTotalPrice()));
+                buf.putLong(b.getCreatedAt().getTime());
+                buf.putLong(b.isPaid() ? 1 : 0); // flags, padded to 8 bytes
+            }
+            finish(ch, buf, heap, KIND_BOOKINGS, snapshot.bookings.size(), BOOKING_RECORD_SIZE, snapshot.seq);
+            ch.force(true);
+        }
+    }
+
+    static BookingSnapshot readBookings(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int count = readHeader(map, file, KIND_BOOKINGS, BOOKING_RECORD_SIZE);
+            long seq = map.getLong(16);
+            StringReader strings = new StringReader(map, HEADER_SIZE + (long) count * BOOKING_RECORD_SIZE);
+            List<Booking> bookings = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int p = HEADER_SIZE + i * BOOKING_RECORD_SIZE;
+                bookings.add(new Booking(getUuid(map, p), getUuid(map, p + 16), strings.get(p + 32), strings.get(p + 40),
+                        LocalDate.ofEpochDay(map.getInt(p + 48)), LocalDate.ofEpochDay(map.getInt(p + 52)),
+                        map.getLong(p + 56) / 100.0, (map.getLong(p + 72) & 1) != 0, new Date(map.getLong(p + 64))));
+            }
+            return new BookingSnapshot(seq, bookings);
+        }
+    }
+
+    private static FileChannel openForWrite(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void drain(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    /** Writes the remaining records and the string heap, then fills in the header at offset 0. */
+    private static void finish(FileChannel ch, ByteBuffer buf, StringHeap heap, short kind, int count, int recordSize, long seq) throws IOException {
+        drain(ch, buf);
+        byte[] strings = heap.toByteArray();
+        ByteBuffer heapBuf = ByteBuffer.wrap(strings);
+        while (heapBuf.hasRemaining()) ch.write(heapBuf);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort(kind).putInt(count).putInt(recordSize)
+                .putLong(seq).putInt(strings.length).putInt(0).flip();
+        ch.position(0);
+        while (header.hasRemaining()) ch.write(header);
+    }
+
+    private static int readHeader(ByteBuffer map, File file, short kind, int recordSize) throws IOException {
+        if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC) throw new IOException(file + " is not a reservation data file");
+        if (map.getShort(4) != VERSION) throw new IOException(file + " has unsupported version " + map.getShort(4));
+        if (map.getShort(6) != kind || map.getInt(12) != recordSize) throw new IOException(file + " has unexpected record layout");
+        int count = map.getInt(8);
+        long expected = HEADER_SIZE + (long) count * recordSize + map.getInt(24);
+        if (map.limit() != expected) throw new IOException(file + " is truncated");
+        return count;
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    private static void putUuid(ByteBuffer buf, String id) {
+        UUID uuid = UUID.fromString(id);
+        buf.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static String getUuid(ByteBuffer buf, int pos) {
+        return new UUID(buf.getLong(pos), buf.getLong(pos + 8)).toString();
+    }
+
+    /** Deduplicating UTF-8 string heap; guests with many bookings store their name and email once. */
+    private static class StringHeap {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Map<String, Integer> offsets = new HashMap<>();
+
+        void put(ByteBuffer buf, String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            Integer off = offsets.get(s);
+            if (off == null) {
+                off = bytes.size();
+                offsets.put(s, off);
+                bytes.write(utf8, 0, utf8.length);
+            }
+            buf.putInt(off).putInt(utf8.length);
+        }
+
+        byte[] toByteArray() { return bytes.toByteArray(); }
+    }
+
+    private static class StringReader {
+        private final ByteBuffer map;
+        private final long base;
+        private final Map<Integer, String> decoded = new HashMap<>();
+
+        StringReader(ByteBuffer map, long base) {
+            this.map = map;
+            this.base = base;
+        }
+
+        String get(int refPos) {
+            int off = map.getInt(refPos);
+            String s = decoded.get(off);
+            if (s == null) {
+                byte[] utf8 = new byte[map.getInt(refPos + 4)];
+                map.get(Math.toIntExact(base + off), utf8);
+                s = new String(utf8, StandardCharsets.UTF_8);
+                decoded.put(off, s);
+            }
+            return s;
+        }
+    }
+}
+
+/**
+ * Append-only, compressed store of bookings whose stays are over. Each archival run appends one
+ * frame: its compressed length followed by a GZIP member holding the batch, whose CRC trailer
+ * tells a complete frame from a torn one. The file is opened on first use, at which point its
+ * frames are indexed by id and email and a torn or corrupt trailing frame is cut off; later
+ * appends keep the index current.
+ */
+class BookingArchive {
+    private static final int MAX_FRAME_BYTES = 1 << 28;
+
+    private final File file;
+    private FileChannel channel;
+    private Map<String, Long> frameById;              // booking id -> frame offset
+    private Map<String, Set<Long>> framesByEmail;     // normalized email -> frame offsets
+    // Lets lookups skip the monitor while nothing has been archived, the common case.
+    private volatile boolean hasFrames;
+
+    BookingArchive(File file) {
+        this.file = file;
+        this.hasFrames = file.length() > 0;
+    }
+
+    static String emailKey(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Appends the batch as one frame, forced to disk, and returns the offset it starts at. */
+    synchronized long append(List<Booking> batch) throws IOException {
+        open();
+        long offset = channel.size();
+        if (batch.isEmpty()) return offset;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(compressed))) {
+            out.writeInt(batch.size());
+            for (Booking b : batch) BookingJournal.writeBooking(out, b);
+        }
+        byte[] bytes = compressed.toByteArray();
+        ByteBuffer buf = ByteBuffer.allocate(4 + bytes.length);
+        buf.putInt(bytes.length).put(bytes).flip();
+        long pos = offset;
+        while (buf.hasRemaining()) pos += channel.write(buf, pos);
+        channel.force(false);
+        if (Metrics.ENABLED) Metrics.BYTES_WRITTEN.add(4 + bytes.length);
+        for (Booking b : batch) indexEntry(frameById, framesByEmail, b, offset);
+        hasFrames = true;
+        return offset;
+    }
+
+    /** Cuts the archive back to {@code length}, undoing appends whose removal could not be journaled. */
+    synchronized void truncate(long length) throws IOException {
+        open();
+        if (length >= channel.size()) return;
+        channel.truncate(length);
+        channel.force(false);
+        frameById.values().removeIf(offset -> offset >= length);
+        framesByEmail.values().removeIf(offsets -> {
+            offsets.removeIf(offset -> offset >= length);
+            return offsets.isEmpty();
+        });
+        hasFrames = length > 0;
+    }
+
+    Booking get(String bookingId) throws IOException {
+        if (!hasFrames) return null;
+        synchronized (this) {
+            open();
+            Long offset = frameById.get(bookingId);
+            if (offset == null) return null;
+            for (Booking b : readFrame(offset)) {
+                if (b.getBookingId().equals(bookingId)) return b;
+            }
+            return null;
+        }
+    }
+
+    List<Booking> findByEmail(String email) throws IOException {
+        if (!hasFrames) return Collections.emptyList();
+        String key = emailKey(email);
+        Map<String, Booking> found = new LinkedHashMap<>();
+        synchronized (this) {
+            open();
+            for (long offset : framesByEmail.getOrDefault(key, Collections.emptySet())) {
+                for (Booking b : readFrame(offset)) {
+                    if (emailKey(b.getGuestEmail()).equals(key)) found.put(b.getBookingId(), b);
+                }
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * Streams the bookings in the frames from byte {@code offset} on and returns the offset just
+     * past the last frame. Used to fold newly archived frames into saved totals.
+     */
+    synchronized long forEachFrom(long offset, java.util.function.Consumer<Booking> action) throws IOException {
+        if (!hasFrames) return offset;
+        open();
+        long end = channel.size();
+        while (offset < end) {
+            byte[] frame = frameAt(offset);
+            for (Booking b : decode(frame)) action.accept(b);
+            offset += 4 + frame.length;
+        }
+        return offset;
+    }
+
+    /** Closes the file and drops the index; the next use opens and indexes it again. */
+    synchronized void close() throws IOException {
+        frameById = null;
+        framesByEmail = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Opens the file if it is not open yet. The frames are indexed into local maps that are kept
+     * only once the whole file has been read, and anything after the last frame that decodes,
+     * left by a crash in the middle of an append, is truncated away.
+     */
+    private void open() throws IOException {
+        if (channel != null) return;
+        Map<String, Long> byId = new HashMap<>();
+        Map<String, Set<Long>> byEmail = new HashMap<>();
+        long end = 0;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    byte[] frame = nextFrame(in);
+                    if (frame == null) break;
+                    List<Booking> batch;
+                    try {
+                        batch = decode(frame);
+                    } catch (IOException | RuntimeException e) {
+                        break; // bad GZIP trailer or garbled batch
+                    }
+                    for (Booking b : batch) indexEntry(byId, byEmail, b, end);
+                    end += 4 + frame.length;
+                }
+            }
+        }
+        FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (ch.size() > end) {
+                System.err.println("Truncating " + (ch.size() - end) + " bytes of torn archive frame from " + file);
+                ch.truncate(end);
+                ch.force(false);
+            }
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        channel = ch;
+        frameById = byId;
+        framesByEmail = byEmail;
+        hasFrames = end > 0;
+    }
+
+    private static void indexEntry(Map<String, Long> byId, Map<String, Set<Long>> byEmail, Booking b, long offset) {
+        byId.put(b.getBookingId(), offset);
+        byEmail.computeIfAbsent(emailKey(b.getGuestEmail()), k -> new HashSet<>()).add(offset);
+    }
+
+    /** Next complete frame, or null at the end of the file or at a torn or implausible length. */
+    private static byte[] nextFrame(DataInputStream in) throws IOException {
+        try {
+            int len = in.readInt();
+            if (len <= 0 || len > MAX_FRAME_BYTES) return null;
+            byte[] frame = new byte[len];
+            in.readFully(frame);
+            return frame;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private List<Booking> readFrame(long offset) throws IOException {
+        return decode(frameAt(offset));
+    }
+
+    private byte[] frameAt(long offset) throws IOException {
+        ByteBuffer len = ByteBuffer.allocate(4);
+        while (len.hasRemaining() && channel.read(len, offset + len.position()) > 0) { }
+        ByteBuffer frame = ByteBuffer.allocate(len.flip().getInt());
+        while (frame.hasRemaining() && channel.read(frame, offset + 4 + frame.position()) > 0) { }
+        return frame.array();
+    }
+
+    private static List<Booking> decode(byte[] frame) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(frame)))) {
+            int n = in.readInt();
+            List<Booking> batch = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) batch.add(BookingJournal.readBooking(in));
+            // Reading to the end makes GZIPInputStream check the member's CRC and length trailer.
+            if (in.read() != -1) throw new IOException("Trailing data in archive frame");
+            return batch;
+        }
+    }
+}
+
+/**
+ * Append-only log of booking changes. Record layout: length, CRC32 of the body, then the body
+ * (type, sequence number, payload). A torn or corrupt tail is detected by the CRC and cut off on replay.
+ */
+class BookingJournal {
+    static final byte CREATE = 1;
+    static final byte CANCEL = 2;
+    static final byte PAID = 3;
+    static final byte CREATE_BATCH = 4; // several bookings under one CRC, so a batch is replayed whole or not at all
+    static final byte ARCHIVED = 5;     // ids moved to the archive file; drops them from the live set
+    private static final int MAX_RECORD_BYTES = 1 << 24;
+
+    private final File file;
+    private FileChannel channel;
+    private long nextSeq;
+    private volatile long durableSeq;
+    private final Object syncLock = new Object();
+
+    BookingJournal(File file, long nextSeq) throws IOException {
+        this.file = file;
+        this.nextSeq = nextSeq;
+        this.durableSeq = nextSeq - 1;
+        this.channel = open(file);
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    synchronized long append(byte type, Booking b, String bookingId) throws IOException {
+        long seq = nextSeq;
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(type);
+        out.writeLong(seq);
+        if (type == CREATE) {
+            writeBooking(out, b);
+        } else {
+            out.writeUTF(bookingId);
+        }
+        return write(body.toByteArray());
+    }
+
+    synchronized long appendArchived(List<String> bookingIds) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(40 * bookingIds.size() + 16);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(ARCHIVED);
+        out.writeLong(nextSeq);
+        out.writeInt(bookingIds.size());
+        for (String id : bookingIds) out.writeUTF(id);
+        return write(body.toByteArray());
+    }
+
+    synchronized long appendBatch(List<Booking> batch) throws IOException {
+        long seq = nextSeq;
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128 * batch.size());
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(CREATE_BATCH);
+        out.writeLong(seq);
+        out.writeInt(batch.size());
+        for (Booking b : batch) writeBooking(out, b);
+        if (body.size() > MAX_RECORD_BYTES) throw new IOException("Batch too large for one journal record");
+        return write(body.toByteArray());
+    }
+
+    static void writeBooking(DataOutputStream out, Booking b) throws IOException {
+        out.writeUTF(b.getBookingId());
+        out.writeUTF(b.getRoomId());
+        out.writeUTF(b.getGuestName());
+        out.writeUTF(b.getGuestEmail());
+        out.writeLong(b.getStartDate().toEpochDay());
+        out.writeLong(b.getEndDate().toEpochDay());
+        out.writeDouble(b.getTotalPrice());
+        out.writeBoolean(b.isPaid());
+        out.writeLong(b.getCreatedAt().getTime());
+    }
+
+    static Booking readBooking(DataInputStream in) throws IOException {
+        return new Booking(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                LocalDate.ofEpochDay(in.readLong()), LocalDate.ofEpochDay(in.readLong()),
+                in.readDouble(), in.readBoolean(), new Date(in.readLong()));
+    }
+
+    /** Frames the record body with its length and CRC and appends it; caller holds the journal lock. */
+    private long write(byte[] bytes) throws IOException {
+        long t0 = Metrics.start();
+        long seq = nextSeq;
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteBuffer buf = ByteBuffer.allocate(8 + bytes.length);
+        buf.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes).flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        nextSeq++;
+        if (Metrics.ENABLED) {
+            Metrics.BYTES_WRITTEN.add(8 + bytes.length);
+            Metrics.JOURNAL_APPEND.recordSince(t0);
+        }
+        return seq;
+    }
+
+    /** Group commit: whoever gets the sync lock forces everything appended so far, covering the callers queued behind it. */
+    void sync(long seq) throws IOException {
+        if (durableSeq >= seq) return;
+        synchronized (syncLock) {
+            if (durableSeq >= seq) return;
+            long target;
+            synchronized (this) {
+                target = nextSeq - 1;
+            }
+            long t0 = Metrics.start();
+            channel.force(false);
+            Metrics.JOURNAL_SYNC.recordSince(t0);
+            durableSeq = target;
+        }
+    }
+
+    void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    /** Makes the current journal durable, renames it to {@code sealed} and starts a fresh, empty journal. */
+    void rotate(File sealed) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+                Files.move(file.toPath(), sealed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                channel = open(file);
+                durableSeq = nextSeq - 1;
+            }
+        }
+    }
+
+    /** Applies records newer than {@code afterSeq} to {@code state}; returns the last sequence number seen. */
+    static long replay(File file, long afterSeq, Map<String, Booking> state) throws IOException {
+        if (!file.exists()) return afterSeq;
+        long lastSeq = afterSeq;
+        long goodLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int expectedCrc;
+                byte[] bytes;
+                try {
+                    expectedCrc = in.readInt();
+                    if (len <= 0 || len > MAX_RECORD_BYTES) break;
+                    bytes = new byte[len];
+                    in.readFully(bytes);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if ((int) crc.getValue() != expectedCrc) break;
+                goodLength += 8 + len;
+
+                DataInputStream rec = new DataInputStream(new ByteArrayInputStream(bytes));
+                byte type = rec.readByte();
+                long seq = rec.readLong();
+                lastSeq = Math.max(lastSeq, seq);
+                if (seq <= afterSeq) continue;
+                if (type == CREATE) {
+                    Booking b = readBooking(rec);
+                    state.put(b.getBookingId(), b);
+                } else if (type == CREATE_BATCH) {
+                    for (int n = rec.readInt(); n > 0; n--) {
+                        Booking b = readBooking(rec);
+                        state.put(b.getBookingId(), b);
+                    }
+                } else if (type == ARCHIVED) {
+                    for (int n = rec.readInt(); n > 0; n--) state.remove(rec.readUTF());
+                } else if (type == CANCEL) {
+                    state.remove(rec.readUTF());
+                } else if (type == PAID) {
+                    Booking b = state.get(rec.readUTF());
+                    if (b != null) b.setPaid(true);
+                }
+            }
+        }
+        if (goodLength < file.length()) {
+            System.err.println("Truncating corrupt tail of " + file + " at byte " + goodLength);
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(goodLength);
+            }
+        }
+        return lastSeq;
+    }
+}
+
+// ----------------------- Business Logic -----------------------
+/**
+ * One bit per night for a single room, 64 nights per word, counted from {@link #EPOCH}. Nights
+ * before the epoch are not tracked, and the calendar refuses nights past {@link #MAX_DAYS}, so a
+ * room costs at most 4 KB however far ahead someone books. Writers must hold the room's lock;
+ * readers see each word atomically and need no lock.
+ */
+class OccupancyCalendar {
+    static final long EPOCH = LocalDate.of(2020, 1, 1).toEpochDay();
+    static final int MAX_DAYS = 1 << 15; // through 2109, well past Hotel's booking horizon
+
+    private volatile AtomicLongArray words = new AtomicLongArray(0);
+
+    public void occupy(LocalDate start, LocalDate end) { update(start, end, true); }
+
+    public void release(LocalDate start, LocalDate end) { update(start, end, false); }
+
+    private void update(LocalDate start, LocalDate end, boolean occupied) {
+        long from = Math.max(start.toEpochDay() - EPOCH, 0);
+        long to = end.toEpochDay() - EPOCH; // exclusive
+        if (to <= from) return;
+        if (to > MAX_DAYS) throw new IllegalArgumentException("Stay ends past the calendar horizon: " + end);
+        AtomicLongArray w = ensureCapacity(to);
+        for (long day = from; day < to; ) {
+            int word = (int) (day >>> 6);
+            long wordEnd = Math.min(to, ((long) word + 1) << 6);
+            long mask = rangeMask(day, wordEnd);
+            w.set(word, occupied ? (w.get(word) | mask) : (w.get(word) & ~mask));
+            day = wordEnd;
+        }
+    }
+
+    private AtomicLongArray ensureCapacity(long days) {
+        AtomicLongArray w = words;
+        int needed = (int) ((days + 63) >>> 6);
+        if (needed <= w.length()) return w;
+        AtomicLongArray grown = new AtomicLongArray(Math.min(Math.max(needed, w.length() * 2), MAX_DAYS >>> 6));
+        for (int i = 0; i < w.length(); i++) grown.set(i, w.get(i));
+        words = grown;
+        return grown;
+    }
+
+    /** Bits [from, to) of the word containing {@code from}; {@code to} must not pass that word's end. */
+    private static long rangeMask(long from, long to) {
+        int lo = (int) (from & 63);
+        int len = (int) (to - from);
+        long bits = len == 64 ? -1L : (1L << len) - 1;
+        return bits << lo;
+    }
+
+    /** True if no night in [start, end) is occupied: ANDs each covered word with its range mask. */
+    public boolean isFree(LocalDate start, LocalDate end) {
+        long from = Math.max(start.toEpochDay() - EPOCH, 0);
+        long to = end.toEpochDay() - EPOCH;
+        AtomicLongArray w = words;
+        to = Math.min(to, (long) w.length() << 6);
+        for (long day = from; day < to; ) {
+            int word = (int) (day >>> 6);
+            long wordEnd = Math.min(to, ((long) word + 1) << 6);
+            if ((w.get(word) & rangeMask(day, wordEnd)) != 0) return false;
+            day = wordEnd;
+        }
+        return true;
+    }
+
+    /** Adds 1 to {@code counts[i]} for every free night {@code from + i}, i in [0, counts.length). */
+    public void addFreeNights(LocalDate from, int[] counts) {
+        long first = from.toEpochDay() - EPOCH;
+        long to = first + counts.length;
+        AtomicLongArray w = words;
+        long tracked = (long) w.length() << 6;
+        for (long day = first; day < to; ) {
+            if (day < 0 || day >= tracked) { // untracked nights count as free
+                counts[(int) (day - first)]++;
+                day++;
+                continue;
+            }
+            int word = (int) (day >>> 6);
+            long wordEnd = Math.min(to, ((long) word + 1) << 6);
+            long free = ~w.get(word) & rangeMask(day, wordEnd);
+            long wordBase = (long) word << 6;
+            while (free != 0) {
+                counts[(int) (wordBase + Long.numberOfTrailingZeros(free) - first)]++;
+                free &= free - 1;
+            }
+            day = wordEnd;
+        }
+    }
+}
+
+/**
+ * Bookings and holds of a single room ordered by check-in date, mirrored into an
+ * {@link OccupancyCalendar} that answers availability. Stays of one room never overlap, so
+ * for nights the calendar does not cover, the only candidate for a clash with [start, end) is
+ * the last stay starting before end. Reads are lock-free; writers must hold the room's lock in
+ * {@link Hotel}.
+ */
+class RoomSchedule {
+    private final ConcurrentSkipListMap<LocalDate, Stay> byStart = new ConcurrentSkipListMap<>();
+    private final OccupancyCalendar calendar = new OccupancyCalendar();
+
+    /**
+     * Tested word by word on the occupancy bitset. The calendar does not track nights before its
+     * epoch, so ranges starting earlier are checked against the stays themselves.
+     */
+    public boolean isFree(LocalDate start, LocalDate end) {
+        if (start.toEpochDay() >= OccupancyCalendar.EPOCH) return calendar.isFree(start, end);
+        Map.Entry<LocalDate, Stay> prev = byStart.lowerEntry(end);
+        return prev == null || !prev.getValue().getEndDate().isAfter(start);
+    }
+
+    public boolean contains(Stay s) { return byStart.get(s.getStartDate()) == s; }
+
+    public void add(Stay s) {
+        byStart.put(s.getStartDate(), s);
+        calendar.occupy(s.getStartDate(), s.getEndDate());
+    }
+
+    public void remove(Stay s) {
+        if (byStart.remove(s.getStartDate(), s)) calendar.release(s.getStartDate(), s.getEndDate());
+    }
+
+    public OccupancyCalendar getCalendar() { return calendar; }
+}
+
+class BookingRequest {
+    public final String roomId;
+    public final String guestName;
+    public final String guestEmail;
+    public final LocalDate start;
+    public final LocalDate end; // exclusive
+
+    public BookingRequest(String roomId, String guestName, String guestEmail, LocalDate start, LocalDate end) {
+        this.roomId = roomId; this.guestName = guestName; this.guestEmail = guestEmail; this.start = start; this.end = end;
+    }
+}
+
+/**
+ * Offline bulk import. Reads CSV lines {@code roomId,guestName,guestEmail,yyyy-MM-dd,yyyy-MM-dd}
+ * (blank lines and lines starting with # are skipped) and books them in all-or-nothing batches.
+ */
+class BookingImporter {
+    private final Hotel hotel;
+    private final int batchSize;
+
+    public BookingImporter(Hotel hotel, int batchSize) {
+        this.hotel = hotel;
+        this.batchSize = batchSize;
+    }
+
+    /** Returns the number of bookings created. Stops at the first failing batch; earlier batches stay committed. */
+    public int importFile(File file) throws IOException {
+        int imported = 0;
+        int lineNo = 0;
+        int batchStartLine = 1;
+        List<BookingRequest> batch = new ArrayList<>(batchSize);
+        try (BufferedReader in = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split(",");
+                if (f.length != 5) throw new IllegalArgumentException("Line " + lineNo + ": expected 5 fields");
+                try {
+                    batch.add(new BookingRequest(f[0].trim(), f[1].trim(), f[2].trim(),
+                            LocalDate.parse(f[3].trim()), LocalDate.parse(f[4].trim())));
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Line " + lineNo + ": " + e.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    imported += commit(batch, batchStartLine, imported);
+                    batchStartLine = lineNo + 1;
+                }
+            }
+        }
+        return imported + commit(batch, batchStartLine, imported);
+    }
+
+    private int commit(List<BookingRequest> batch, int firstLine, int importedSoFar) {
+        int n = batch.size();
+        try {
+            hotel.createBookings(batch);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Batch starting at line " + firstLine + " rejected (" + importedSoFar
+                    + " bookings imported before it): " + e.getMessage());
+        }
+        batch.clear();
+        return n;
+    }
+}
+
+/**
+ * Revenue, booked nights and paid/unpaid totals per (category, month), plus booked nights per room
+ * and month. Kept up to date on every create, cancel and payment, so reports never scan bookings.
+ * A stay that crosses a month boundary is split by night; money is tracked in cents and the
+ * rounding remainder goes to the last night so the parts always add up to the booking total.
+ */
+class RevenueAggregates {
+    static class Cell {
+        final LongAdder revenueCents = new LongAdder();
+        final LongAdder paidCents = new LongAdder();
+        final LongAdder unpaidCents = new LongAdder();
+        final LongAdder nights = new LongAdder();
+        final LongAdder bookings = new LongAdder(); // bookings with at least one night in the month
+    }
+
+    static class Row {
+        public final String category;
+        public final YearMonth month;
+        public final double revenue, paid, unpaid;
+        public final long nights, bookings;
+
+        Row(String category, YearMonth month, Cell c) {
+            this.category = category;
+            this.month = month;
+            this.revenue = c.revenueCents.sum() / 100.0;
+            this.paid = c.paidCents.sum() / 100.0;
+            this.unpaid = c.unpaidCents.sum() / 100.0;
+            this.nights = c.nights.sum();
+            this.bookings = c.bookings.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: revenue=%.2f paid=%.2f unpaid=%.2f nights=%d bookings=%d",
+                    category, month, revenue, paid, unpaid, nights, bookings);
+        }
+    }
+
+    private final Map<String, Map<YearMonth, Cell>> byCategory = new ConcurrentHashMap<>();
+    private final Map<String, Map<YearMonth, LongAdder>> roomNights = new ConcurrentHashMap<>();
+
+    void add(Booking b, String category) { apply(b, category, 1, false); }
+
+    void remove(Booking b, String category) { apply(b, category, -1, false); }
+
+    /** Moves the booking's amounts from unpaid to paid. */
+    void markPaid(Booking b, String category) { apply(b, category, 1, true); }
+
+    private void apply(Booking b, String category, int sign, boolean paymentOnly) {
+        long totalCents = Math.round(b.getTotalPrice() * 100.0);
+        long nights = ChronoUnit.DAYS.between(b.getStartDate(), b.getEndDate());
+        if (nights <= 0) return;
+        long perNight = totalCents / nights;
+        Map<YearMonth, Cell> months = byCategory.computeIfAbsent(category, k -> new ConcurrentHashMap<>());
+        Map<YearMonth, LongAdder> room = roomNights.computeIfAbsent(b.getRoomId(), k -> new ConcurrentHashMap<>());
+        LocalDate day = b.getStartDate();
+        while (day.isBefore(b.getEndDate())) {
+            YearMonth month = YearMonth.from(day);
+            LocalDate monthEnd = month.plusMonths(1).atDay(1);
+            LocalDate segmentEnd = monthEnd.isBefore(b.getEndDate()) ? monthEnd : b.getEndDate();
+            long n = ChronoUnit.DAYS.between(day, segmentEnd);
+            long cents = perNight * n + (segmentEnd.equals(b.getEndDate()) ? totalCents - perNight * nights : 0);
+            Cell cell = months.computeIfAbsent(month, k -> new Cell());
+            if (paymentOnly) {
+                cell.unpaidCents.add(-cents);
+                cell.paidCents.add(cents);
+            } else {
+                cell.revenueCents.add(sign * cents);
+                (b.isPaid() ? cell.paidCents : cell.unpaidCents).add(sign * cents);
+                cell.nights.add(sign * n);
+                cell.bookings.add(sign);
+                room.computeIfAbsent(month, k -> new LongAdder()).add(sign * n);
+            }
+            day = segmentEnd;
+        }
+    }
+
+    /** All (category, month) rows, ordered by category then month. */
+    public List<Row> revenueReport() {
+        List<Row> rows = new ArrayList<>();
+        for (Map.Entry<String, Map<YearMonth, Cell>> c : new TreeMap<>(byCategory).entrySet()) {
+            for (Map.Entry<YearMonth, Cell> m : new TreeMap<>(c.getValue()).entrySet()) {
+                rows.add(new Row(c.getKey(), m.getKey(), m.getValue()));
+            }
+        }
+        return rows;
+    }
+
+    public long bookedNights(String roomId, YearMonth month) {
+        Map<YearMonth, LongAdder> room = roomNights.get(roomId);
+        LongAdder n = room == null ? null : room.get(month);
+        return n == null ? 0 : n.sum();
+    }
+
+    /** Fraction of the month's nights the room is booked. */
+    public double occupancyRate(String roomId, YearMonth month) {
+        return (double) bookedNights(roomId, month) / month.lengthOfMonth();
+    }
+
+    /** Adds every cell of {@code other} into this one. */
+    void addAll(RevenueAggregates other) {
+        for (Map.Entry<String, Map<YearMonth, Cell>> c : other.byCategory.entrySet()) {
+            Map<YearMonth, Cell> months = byCategory.computeIfAbsent(c.getKey(), k -> new ConcurrentHashMap<>());
+            for (Map.Entry<YearMonth, Cell> m : c.getValue().entrySet()) {
+                Cell from = m.getValue();
+                Cell cell = months.computeIfAbsent(m.getKey(), k -> new Cell());
+                cell.revenueCents.add(from.revenueCents.sum());
+                cell.paidCents.add(from.paidCents.sum());
+                cell.unpaidCents.add(from.unpaidCents.sum());
+                cell.nights.add(from.nights.sum());
+                cell.bookings.add(from.bookings.sum());
+            }
+        }
+        for (Map.Entry<String, Map<YearMonth, LongAdder>> r : other.roomNights.entrySet()) {
+            Map<YearMonth, LongAdder> room = roomNights.computeIfAbsent(r.getKey(), k -> new ConcurrentHashMap<>());
+            for (Map.Entry<YearMonth, LongAdder> m : r.getValue().entrySet()) {
+                room.computeIfAbsent(m.getKey(), k -> new LongAdder()).add(m.getValue().sum());
+            }
+        }
+    }
+
+    // Layout: category count, then per category its name, month count and (month, five sums) per
+    // month; then room count, and per room its id, month count and (month, nights) per month.
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(byCategory.size());
+        for (Map.Entry<String, Map<YearMonth, Cell>> c : byCategory.entrySet()) {
+            out.writeUTF(c.getKey());
+            out.writeInt(c.getValue().size());
+            for (Map.Entry<YearMonth, Cell> m : c.getValue().entrySet()) {
+                Cell cell = m.getValue();
+                out.writeInt(monthIndex(m.getKey()));
+                out.writeLong(cell.revenueCents.sum());
+                out.writeLong(cell.paidCents.sum());
+                out.writeLong(cell.unpaidCents.sum());
+                out.writeLong(cell.nights.sum());
+                out.writeLong(cell.bookings.sum());
+            }
+        }
+        out.writeInt(roomNights.size());
+        for (Map.Entry<String, Map<YearMonth, LongAdder>> r : roomNights.entrySet()) {
+            out.writeUTF(r.getKey());
+            out.writeInt(r.getValue().size());
+            for (Map.Entry<YearMonth, LongAdder> m : r.getValue().entrySet()) {
+                out.writeInt(monthIndex(m.getKey()));
+                out.writeLong(m.getValue().sum());
+            }
+        }
+    }
+
+    /** Adds the cells written by {@link #write} into this one. */
+    void read(DataInputStream in) throws IOException {
+        for (int c = in.readInt(); c > 0; c--) {
+            Map<YearMonth, Cell> months = byCategory.computeIfAbsent(in.readUTF(), k -> new ConcurrentHashMap<>());
+            for (int m = in.readInt(); m > 0; m--) {
+                Cell cell = months.computeIfAbsent(month(in.readInt()), k -> new Cell());
+                cell.revenueCents.add(in.readLong());
+                cell.paidCents.add(in.readLong());
+                cell.unpaidCents.add(in.readLong());
+                cell.nights.add(in.readLong());
+                cell.bookings.add(in.readLong());
+            }
+        }
+        for (int r = in.readInt(); r > 0; r--) {
+            Map<YearMonth, LongAdder> room = roomNights.computeIfAbsent(in.readUTF(), k -> new ConcurrentHashMap<>());
+            for (int m = in.readInt(); m > 0; m--) {
+                room.computeIfAbsent(month(in.readInt()), k -> new LongAdder()).add(in.readLong());
+            }
+        }
+    }
+
+    private static int monthIndex(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static YearMonth month(int index) {
+        return YearMonth.of(Math.floorDiv(index, 12), Math.floorMod(index, 12) + 1);
+    }
+}
+
+/**
+ * Thread-safe booking engine. Writes to a room are serialized by one of a fixed set of striped
+ * locks, so bookings for different rooms proceed in parallel; searches take no locks at all.
+ * Bookings are indexed by id and by normalized guest email so lookups never scan.
+ */
+class Hotel implements Closeable {
+    private static final int LOCK_STRIPES = 256; // power of two
+    /** Latest checkout accepted, in days from today; bounds calendars and revenue aggregates. */
+    static final int BOOKING_HORIZON_DAYS = 3660;
+    static final int MAX_STAY_NIGHTS = 366;
+
+    private final Storage storage;
+    private final List<Room> rooms;
+    private final Map<String, Booking> bookingsById = new ConcurrentHashMap<>();
+    private final Map<String, Set<Booking>> bookingsByEmail = new ConcurrentHashMap<>();
+    private final Map<String, Room> roomsById = new HashMap<>();
+    private final Map<String, RoomSchedule> schedules = new HashMap<>();
+    private final Map<String, List<Room>> roomsByCategory = new HashMap<>();
+    private final ReentrantLock[] roomLocks = new ReentrantLock[LOCK_STRIPES];
+    private final Map<String, RoomHold> holds = new ConcurrentHashMap<>();
+    private final RevenueAggregates aggregates = new RevenueAggregates();
+    // What the archive contributes to the aggregates, saved with the archive length it covers.
+    private final RevenueAggregates archivedTotals = new RevenueAggregates();
+    private long archivedTotalsCovered;
+    private final Object archivedTotalsLock = new Object();
+    private final Object archivalLock = new Object(); // one archival run at a time, and none once closed
+    private ScheduledFuture<?> holdSweeper;
+
+    private ScheduledFuture<?> archiver;
+    private static final int ARCHIVE_BATCH = 10_000;
+    private static final long ARCHIVE_INTERVAL_HOURS = Long.getLong("hotel.archive.hours", 6);
+
+    private volatile boolean closed;
+
+    /**
+     * Shared by every Hotel in the process: sweeps expired holds and archives finished stays.
+     * Cancelled tasks are dropped at once so a closed hotel is not kept reachable.
+     */
+    private static final ScheduledThreadPoolExecutor MAINTENANCE = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "hotel-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
+    static { MAINTENANCE.setRemoveOnCancelPolicy(true); }
+
+    public Hotel() {
+        this(new Storage(new File(".")));
+    }
+
+    public Hotel(Storage storage) {
+        this.storage = storage;
+        this.rooms = Collections.unmodifiableList(new ArrayList<>(storage.loadRooms()));
+        for (int i = 0; i < roomLocks.length; i++) roomLocks[i] = new ReentrantLock();
+        for (Room r : rooms) {
+            roomsById.put(r.getRoomId(), r);
+            schedules.put(r.getRoomId(), new RoomSchedule());
+            roomsByCategory.computeIfAbsent(categoryKey(r.getCategory()), k -> new ArrayList<>()).add(r);
+        }
+        for (Booking b : storage.loadBookings()) {
+            RoomSchedule schedule = schedules.get(b.getRoomId());
+            if (schedule != null) schedule.add(b);
+            index(b);
+        }
+        archivedTotalsCovered = storage.readArchiveTotals(archivedTotals);
+        aggregates.addAll(archivedTotals);
+        try {
+            // Only frames from an archival run that did not finish are read. Bookings in them that
+            // are still live had their removal cut off by a crash; finish it now, before anyone can
+            // cancel a booking the archive already holds.
+            List<Booking> unfinished = new ArrayList<>();
+            storage.archive().forEachFrom(archivedTotalsCovered, b -> {
+                Booking live = bookingsById.get(b.getBookingId());
+                if (live == null) aggregates.add(b, categoryOf(b));
+                else unfinished.add(live);
+            });
+            if (!unfinished.isEmpty()) {
+                List<String> ids = new ArrayList<>(unfinished.size());
+                for (Booking b : unfinished) ids.add(b.getBookingId());
+                storage.sync(storage.logArchived(ids));
+                for (Booking b : unfinished) {
+                    RoomSchedule schedule = schedules.get(b.getRoomId());
+                    if (schedule != null) schedule.remove(b);
+                    unindexLive(b);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read booking archive", e);
+        }
+        storage.startCompactor();
+        if (ARCHIVE_INTERVAL_HOURS > 0) {
+            archiver = MAINTENANCE.scheduleWithFixedDelay(() -> {
+                try {
+                    archivePastBookings(LocalDate.now());
+                } catch (Exception e) {
+                    System.err.println("Booking archival failed: " + e.getMessage());
+                }
+            }, 1, ARCHIVE_INTERVAL_HOURS * 60, TimeUnit.MINUTES);
+        }
+    }
+
+    private static String categoryKey(String category) {
+        return category.toLowerCase(Locale.ROOT);
+    }
+
+    private String categoryOf(Booking b) {
+        Room room = roomsById.get(b.getRoomId());
+        return room == null ? "Unknown" : room.getCategory();
+    }
+
+    public RevenueAggregates getAggregates() { return aggregates; }
+
+    private static String emailKey(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void index(Booking b) {
+        if (Metrics.ENABLED) Metrics.BOOKINGS.increment();
+        aggregates.add(b, categoryOf(b));
+        bookingsById.put(b.getBookingId(), b);
+        bookingsByEmail.compute(emailKey(b.getGuestEmail()), (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(b);
+            return set;
+        });
+    }
+
+    private void unindex(Booking b) {
+        if (!unindexLive(b)) return;
+        aggregates.remove(b, categoryOf(b));
+    }
+
+    /** Drops the booking from the live indexes only; aggregates keep counting it (used for archival). */
+    private boolean unindexLive(Booking b) {
+        if (!bookingsById.remove(b.getBookingId(), b)) return false;
+        if (Metrics.ENABLED) Metrics.BOOKINGS.decrement();
+        bookingsByEmail.computeIfPresent(emailKey(b.getGuestEmail()), (k, set) -> {
+            set.remove(b);
+            return set.isEmpty() ? null : set;
+        });
+        return true;
+    }
+
+    private static int stripe(String roomId) {
+        int h = roomId.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    private ReentrantLock lockFor(String roomId) {
+        return roomLocks[stripe(roomId)];
+    }
+
+    public List<String> listCategories() {
+        return rooms.stream().map(Room::getCategory).distinct().sorted().collect(Collectors.toList());
+    }
+
+    public List<Room> searchAvailableRooms(LocalDate start, LocalDate end, String category) {
+        long t0 = Metrics.start();
+        try {
+            List<Room> candidates = rooms;
+            if (category != null && !category.isEmpty()) {
+                candidates = roomsByCategory.getOrDefault(categoryKey(category), Collections.emptyList());
+            }
+            List<Room> result = new ArrayList<>();
+            for (Room r : candidates) {
+                if (schedules.get(r.getRoomId()).isFree(start, end)) result.add(r);
+            }
+            return result;
+        } finally {
+            Metrics.SEARCH.recordSince(t0);
+        }
+    }
+
+    /** Number of free rooms in the category for each of the {@code nights} nights starting at {@code from}. */
+    public int[] freeRoomsPerNight(String category, LocalDate from, int nights) {
+        int[] counts = new int[nights];
+        for (Room r : roomsByCategory.getOrDefault(categoryKey(category), Collections.emptyList())) {
+            schedules.get(r.getRoomId()).getCalendar().addFreeNights(from, counts);
+        }
+        return counts;
+    }
+
+    /** Free rooms per night for every category, computed in one pass over all rooms. */
+    public Map<String, int[]> freeRoomsPerNightByCategory(LocalDate from, int nights) {
+        Map<String, int[]> result = new TreeMap<>();
+        for (Room r : rooms) {
+            int[] counts = result.computeIfAbsent(r.getCategory(), k -> new int[nights]);
+            schedules.get(r.getRoomId()).getCalendar().addFreeNights(from, counts);
+        }
+        return result;
+    }
+
+    /** Prices a stay; rejects empty stays, stays over {@link #MAX_STAY_NIGHTS} and checkouts past the horizon. */
+    public double calculatePrice(Room room, LocalDate start, LocalDate end) {
+        long nights = java.time.temporal.ChronoUnit.DAYS.between(start, end);
+        if (nights <= 0) throw new IllegalArgumentException("End date must be after start date");
+        if (nights > MAX_STAY_NIGHTS) throw new IllegalArgumentException("Stays are limited to " + MAX_STAY_NIGHTS + " nights");
+        if (end.isAfter(latestCheckout())) {
+            throw new IllegalArgumentException("Bookings must end by " + latestCheckout());
+        }
+        return Math.round(room.getPricePerNight() * nights * 100.0) / 100.0;
+    }
+
+    static LocalDate latestCheckout() {
+        return LocalDate.now().plusDays(BOOKING_HORIZON_DAYS);
+    }
+
+    public Booking createBooking(String roomId, String guestName, String guestEmail, LocalDate start, LocalDate end) {
+        long t0 = Metrics.start();
+        try {
+            Room room = roomsById.get(roomId);
+            if (room == null) throw new IllegalArgumentException("Room not found");
+            double total = calculatePrice(room, start, end);
+            RoomSchedule schedule = schedules.get(roomId);
+            Booking booking = new Booking(UUID.randomUUID().toString(), roomId, guestName, guestEmail, start, end, total, false);
+            long seq;
+            ReentrantLock lock = lockFor(roomId);
+            lock.lock();
+            try {
+                if (!schedule.isFree(start, end)) {
+                    throw new RoomUnavailableException("Room not available for the selected dates");
+                }
+                seq = insert(booking, schedule);
+            } finally {
+                lock.unlock();
+            }
+            storage.sync(seq);
+            return booking;
+        } finally {
+            Metrics.CREATE.recordSince(t0);
+        }
+    }
+
+    /**
+     * Books every request or none. All affected room locks are taken in stripe order, the whole
+     * batch is checked against existing stays and against itself, and it is journaled as a single
+     * record with one fsync.
+     */
+    public List<Booking> createBookings(List<BookingRequest> requests) {
+        long t0 = Metrics.start();
+        try {
+            List<Booking> batch = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequest req = requests.get(i);
+                Room room = roomsById.get(req.roomId);
+                if (room == null) throw new IllegalArgumentException("Request " + (i + 1) + ": Room not found");
+                double total;
+                try {
+                    total = calculatePrice(room, req.start, req.end);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Request " + (i + 1) + ": " + e.getMessage());
+                }
+                batch.add(new Booking(UUID.randomUUID().toString(), req.roomId, req.guestName, req.guestEmail, req.start, req.end, total, false));
+            }
+            if (batch.isEmpty()) return batch;
+
+            List<Booking> byRoom = new ArrayList<>(batch);
+            byRoom.sort(Comparator.comparing(Booking::getRoomId).thenComparing(Booking::getStartDate));
+            for (int i = 1; i < byRoom.size(); i++) {
+                Booking prev = byRoom.get(i - 1), b = byRoom.get(i);
+                if (prev.getRoomId().equals(b.getRoomId()) && prev.getEndDate().isAfter(b.getStartDate())) {
+                    throw new IllegalArgumentException("Requests overlap for room " + roomsById.get(b.getRoomId()).getNumber());
+                }
+            }
+
+            ReentrantLock[] locks = batch.stream().mapToInt(b -> stripe(b.getRoomId())).distinct().sorted()
+                    .mapToObj(i -> roomLocks[i]).toArray(ReentrantLock[]::new);
+            long seq;
+            for (ReentrantLock lock : locks) lock.lock();
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    Booking b = batch.get(i);
+                    if (!schedules.get(b.getRoomId()).isFree(b.getStartDate(), b.getEndDate())) {
+                        throw new RoomUnavailableException("Request " + (i + 1) + ": Room not available for the selected dates");
+                    }
+                }
+                seq = storage.logCreateAll(batch);
+                for (Booking b : batch) {
+                    schedules.get(b.getRoomId()).add(b);
+                    index(b);
+                }
+            } finally {
+                for (int i = locks.length - 1; i >= 0; i--) locks[i].unlock();
+            }
+            storage.sync(seq);
+            return batch;
+        } finally {
+            Metrics.CREATE_BATCH.recordSince(t0);
+        }
+    }
+
+    /** Journals and indexes a booking whose dates were already checked; caller holds the room lock. */
+    private long insert(Booking booking, RoomSchedule schedule) {
+        long seq = storage.logCreate(booking);
+        schedule.add(booking);
+        index(booking);
+        return seq;
+    }
+
+    /** Tentatively takes the room for the given dates. The hold is not persisted and lapses after {@code ttlMillis}. */
+    public RoomHold holdRoom(String roomId, String guestName, String guestEmail, LocalDate start, LocalDate end, long ttlMillis) {
+        Room room = roomsById.get(roomId);
+        if (room == null) throw new IllegalArgumentException("Room not found");
+        double total = calculatePrice(room, start, end);
+        RoomSchedule schedule = schedules.get(roomId);
+        RoomHold hold = new RoomHold(UUID.randomUUID().toString(), roomId, guestName, guestEmail, start, end, total,
+                System.currentTimeMillis() + ttlMillis);
+        ReentrantLock lock = lockFor(roomId);
+        lock.lock();
+        try {
+            if (!schedule.isFree(start, end)) {
+                throw new RoomUnavailableException("Room not available for the selected dates");
+            }
+            schedule.add(hold);
+            holds.put(hold.getHoldId(), hold);
+        } finally {
+            lock.unlock();
+        }
+        startHoldSweeper();
+        return hold;
+    }
+
+    /** Turns a live hold into a booking on the same room and dates. */
+    public Booking confirmHold(String holdId, boolean paid) {
+        long t0 = Metrics.start();
+        try {
+            RoomHold hold = holds.get(holdId);
+            if (hold == null) throw new IllegalStateException("Hold not found or already released");
+            RoomSchedule schedule = schedules.get(hold.getRoomId());
+            Booking booking = new Booking(UUID.randomUUID().toString(), hold.getRoomId(), hold.getGuestName(), hold.getGuestEmail(),
+                    hold.getStartDate(), hold.getEndDate(), hold.getTotalPrice(), paid);
+            long seq;
+            ReentrantLock lock = lockFor(hold.getRoomId());
+            lock.lock();
+            try {
+                if (!holds.remove(holdId, hold)) throw new IllegalStateException("Hold not found or already released");
+                schedule.remove(hold);
+                if (hold.isExpired(System.currentTimeMillis())) throw new HoldExpiredException("Hold expired");
+                seq = insert(booking, schedule);
+            } finally {
+                lock.unlock();
+            }
+            storage.sync(seq);
+            return booking;
+        } finally {
+            Metrics.CONFIRM_HOLD.recordSince(t0);
+        }
+    }
+
+    public boolean releaseHold(String holdId) {
+        RoomHold hold = holds.get(holdId);
+        if (hold == null) return false;
+        ReentrantLock lock = lockFor(hold.getRoomId());
+        lock.lock();
+        try {
+            if (!holds.remove(holdId, hold)) return false;
+            schedules.get(hold.getRoomId()).remove(hold);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private synchronized void startHoldSweeper() {
+        if (holdSweeper != null || closed) return;
+        holdSweeper = MAINTENANCE.scheduleWithFixedDelay(() -> {
+            long now = System.currentTimeMillis();
+            for (RoomHold h : holds.values()) {
+                if (h.isExpired(now)) releaseHold(h.getHoldId());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public boolean cancelBooking(String bookingId) {
+        long t0 = Metrics.start();
+        try {
+            Booking b = bookingsById.get(bookingId); // archived stays are over and cannot be cancelled
+            if (b == null) return false;
+            RoomSchedule schedule = schedules.get(b.getRoomId());
+            long seq;
+            ReentrantLock lock = lockFor(b.getRoomId());
+            lock.lock();
+            try {
+                if (schedule != null && !schedule.contains(b)) return false; // cancelled concurrently
+                seq = storage.logCancel(bookingId);
+                if (schedule != null) schedule.remove(b);
+                unindex(b);
+            } finally {
+                lock.unlock();
+            }
+            storage.sync(seq);
+            return true;
+        } finally {
+            Metrics.CANCEL.recordSince(t0);
+        }
+    }
+
+    public boolean markPaid(String bookingId) {
+        long t0 = Metrics.start();
+        try {
+            Booking b = bookingsById.get(bookingId);
+            if (b == null) return false;
+            long seq;
+            ReentrantLock lock = lockFor(b.getRoomId());
+            lock.lock();
+            try {
+                if (bookingsById.get(bookingId) != b) return false; // cancelled or archived concurrently
+                if (b.isPaid()) return true;
+                seq = storage.logPaid(bookingId);
+                b.setPaid(true);
+                aggregates.markPaid(b, categoryOf(b));
+            } finally {
+                lock.unlock();
+            }
+            storage.sync(seq);
+            return true;
+        } finally {
+            Metrics.MARK_PAID.recordSince(t0);
+        }
+    }
+
+    public List<Booking> findBookingsByEmail(String email) {
+        long t0 = Metrics.start();
+        try {
+            Set<Booking> found = bookingsByEmail.get(emailKey(email));
+            List<Booking> result = found == null ? new ArrayList<>() : new ArrayList<>(found);
+            for (Booking b : storage.archive().findByEmail(email)) {
+                if (!bookingsById.containsKey(b.getBookingId())) result.add(b);
+            }
+            result.sort(Comparator.comparing(Booking::getStartDate));
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read booking archive", e);
+        } finally {
+            Metrics.FIND_BY_EMAIL.recordSince(t0);
+        }
+    }
+
+    /** Looks in the live set first, then in the archive. */
+    public Booking getBooking(String bookingId) {
+        Booking b = bookingsById.get(bookingId);
+        if (b != null) return b;
+        try {
+            return storage.archive().get(bookingId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read booking archive", e);
+        }
+    }
+
+    /**
+     * Moves bookings whose stay ended before {@code today} from the live set into the archive.
+     * The affected rooms are locked for the whole move so a concurrent cancel cannot slip in
+     * between writing the archive and journaling the removal, and the archive is cut back if the
+     * removal cannot be journaled; a booking is never both archived and live. Returns the number archived.
+     */
+    public int archivePastBookings(LocalDate today) throws IOException {
+        synchronized (archivalLock) {
+            if (closed) return 0;
+            int archived = 0;
+            while (true) {
+                List<Booking> candidates = new ArrayList<>();
+                for (Booking b : bookingsById.values()) {
+                    if (b.getEndDate().isBefore(today)) candidates.add(b);
+                    if (candidates.size() == ARCHIVE_BATCH) break;
+                }
+                if (candidates.isEmpty()) {
+                    saveArchivedTotals();
+                    return archived;
+                }
+                ReentrantLock[] locks = candidates.stream().mapToInt(b -> stripe(b.getRoomId())).distinct().sorted()
+                        .mapToObj(i -> roomLocks[i]).toArray(ReentrantLock[]::new);
+                long seq;
+                List<Booking> moved = new ArrayList<>(candidates.size());
+                for (ReentrantLock lock : locks) lock.lock();
+                try {
+                    for (Booking b : candidates) {
+                        if (bookingsById.get(b.getBookingId()) == b) moved.add(b); // else cancelled meanwhile
+                    }
+                    if (moved.isEmpty()) continue;
+                    long frame = storage.archive().append(moved);
+                    List<String> ids = new ArrayList<>(moved.size());
+                    for (Booking b : moved) ids.add(b.getBookingId());
+                    try {
+                        seq = storage.logArchived(ids);
+                    } catch (RuntimeException e) {
+                        storage.archive().truncate(frame);
+                        throw e;
+                    }
+                    for (Booking b : moved) {
+                        RoomSchedule schedule = schedules.get(b.getRoomId());
+                        if (schedule != null) schedule.remove(b);
+                        unindexLive(b);
+                    }
+                } finally {
+                    for (int i = locks.length - 1; i >= 0; i--) locks[i].unlock();
+                }
+                storage.sync(seq);
+                archived += moved.size();
+            }
+        }
+    }
+
+    /**
+     * Folds the frames archived since the last save into the saved archive totals. Frames are
+     * only ever written together with the removal of their bookings from the live set, so none
+     * of the new frames' bookings is live or can still be cancelled.
+     */
+    private void saveArchivedTotals() throws IOException {
+        synchronized (archivedTotalsLock) {
+            long end = storage.archive().forEachFrom(archivedTotalsCovered, b -> archivedTotals.add(b, categoryOf(b)));
+            if (end == archivedTotalsCovered) return;
+            storage.writeArchiveTotals(archivedTotals, end);
+            archivedTotalsCovered = end;
+        }
+    }
+
+    public List<Room> getRooms() { return rooms; }
+
+    /**
+     * Stops the hold sweeper and the archiver, then closes the storage. Waits for an archival run
+     * in progress to finish first; the hotel must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            if (holdSweeper != null) holdSweeper.cancel(false);
+            if (archiver != null) archiver.cancel(false);
+        }
+        synchronized (archivalLock) {
+            storage.close();
+        }
+    }
+}
+
+// ----------------------- Multi-property -----------------------
+class PropertyRoom {
+    public final String propertyId;
+    public final Room room;
+
+    public PropertyRoom(String propertyId, Room room) {
+        this.propertyId = propertyId; this.room = room;
+    }
+
+    @Override
+    public String toString() {
+        return propertyId + " " + room;
+    }
+}
+
+/**
+ * A chain of properties, one shard per subdirectory of the chain root, each with its own storage
+ * files and in-memory {@link Hotel}. Shards are loaded on first access; cross-property searches
+ * fan out to every shard in parallel and merge the results by price.
+ */
+class HotelChain implements Closeable {
+    private static final int SEARCH_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private final File root;
+    private final Set<String> propertyIds;
+    // One future per property, completed by whichever caller claimed it; others wait on it outside the map.
+    private final Map<String, CompletableFuture<Hotel>> loaded = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(SEARCH_THREADS, r -> {
+        Thread t = new Thread(r, "chain-search");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public HotelChain(File root) {
+        this.root = root;
+        File[] dirs = root.listFiles(File::isDirectory);
+        List<String> ids = new ArrayList<>();
+        if (dirs != null) for (File d : dirs) ids.add(d.getName());
+        Collections.sort(ids);
+        this.propertyIds = Collections.unmodifiableSet(new LinkedHashSet<>(ids));
+    }
+
+    /** Property ids in sorted order. */
+    public Set<String> getPropertyIds() { return propertyIds; }
+
+    /**
+     * The property's hotel, loading its storage the first time it is asked for. The load runs on
+     * the first caller's thread without holding any map lock; concurrent callers for the same
+     * property wait for it, and callers for other properties are not held up. A failed load is
+     * forgotten so the next call retries.
+     */
+    public Hotel property(String propertyId) {
+        if (!propertyIds.contains(propertyId)) throw new IllegalArgumentException("Unknown property: " + propertyId);
+        CompletableFuture<Hotel> hotel = loaded.get(propertyId);
+        if (hotel == null) {
+            CompletableFuture<Hotel> mine = new CompletableFuture<>();
+            hotel = loaded.putIfAbsent(propertyId, mine);
+            if (hotel == null) {
+                try {
+                    mine.complete(new Hotel(new Storage(new File(root, propertyId))));
+                } catch (RuntimeException | Error e) {
+                    loaded.remove(propertyId, mine);
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+                hotel = mine;
+            }
+        }
+        try {
+            return hotel.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    public List<PropertyRoom> searchAvailableRooms(LocalDate start, LocalDate end, String category) {
+        List<CompletableFuture<List<PropertyRoom>>> parts = new ArrayList<>(propertyIds.size());
+        for (String id : propertyIds) {
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                List<Room> rooms = property(id).searchAvailableRooms(start, end, category);
+                List<PropertyRoom> found = new ArrayList<>(rooms.size());
+                for (Room r : rooms) found.add(new PropertyRoom(id, r));
+                return found;
+            }, executor));
+        }
+        List<PropertyRoom> result = new ArrayList<>();
+        for (CompletableFuture<List<PropertyRoom>> part : parts) {
+            try {
+                result.addAll(part.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        result.sort(Comparator.comparingDouble((PropertyRoom pr) -> pr.room.getPricePerNight())
+                .thenComparing(pr -> pr.propertyId).thenComparing(pr -> pr.room.getNumber()));
+        return result;
+    }
+
+    public int loadedCount() {
+        int count = 0;
+        for (CompletableFuture<Hotel> hotel : loaded.values()) {
+            if (hotel.isDone() && !hotel.isCompletedExceptionally()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Unloads a property and closes its hotel; the next {@link #property} call loads it afresh.
+     * Returns false if it was not loaded.
+     */
+    public boolean evict(String propertyId) throws IOException {
+        CompletableFuture<Hotel> hotel = loaded.remove(propertyId);
+        if (hotel == null) return false;
+        try {
+            hotel.join().close();
+        } catch (CompletionException e) {
+            return false; // its load failed, so there is nothing to close
+        }
+        return true;
+    }
+
+    /** Closes every loaded property and stops the search threads. */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        IOException failure = null;
+        for (String id : new ArrayList<>(loaded.keySet())) {
+            try {
+                evict(id);
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
+
+// ----------------------- Payment Simulation -----------------------
+/**
+ * Simulated card gateway. Latency and jitter are applied with a timer rather than a sleeping
+ * thread, so thousands of charges can be in flight at once.
+ */
+class PaymentGatewaySimulator {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "payment-gateway");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final double successRate;
+    private final long latencyMillis;
+    private final long jitterMillis;
+
+    public PaymentGatewaySimulator(double successRate) { this(successRate, 0, 0); }
+
+    public PaymentGatewaySimulator(double successRate, long latencyMillis, long jitterMillis) {
+        this.successRate = successRate;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    public PaymentResult charge(double amount) {
+        return chargeAsync(amount).join();
+    }
+
+    public CompletableFuture<PaymentResult> chargeAsync(double amount) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long delay = latencyMillis + (jitterMillis > 0 ? rnd.nextLong(jitterMillis + 1) : 0);
+        boolean success = rnd.nextDouble() < successRate;
+        String txnId = UUID.randomUUID().toString();
+        String message = success ? "Payment successful" : "Payment failed (simulated)";
+        PaymentResult result = new PaymentResult(success, txnId, amount, message);
+        if (Metrics.ENABLED && !success) Metrics.PAYMENTS_DECLINED.increment();
+        if (delay <= 0) {
+            Metrics.PAYMENT.record(0);
+            return CompletableFuture.completedFuture(result);
+        }
+        long t0 = Metrics.start();
+        CompletableFuture<PaymentResult> future = new CompletableFuture<>();
+        TIMER.schedule(() -> {
+            Metrics.PAYMENT.recordSince(t0);
+            future.complete(result);
+        }, delay, TimeUnit.MILLISECONDS);
+        return future;
+    }
+}
+
+class PaymentResult {
+    public final boolean success;
+    public final String transactionId;
+    public final double amount;
+    public final String message;
+
+    public PaymentResult(boolean success, String transactionId, double amount, String message) {
+        this.success = success; this.transactionId = transactionId; this.amount = amount; this.message = message;
+    }
+}
+
+/** Result of a charge-and-confirm attempt; {@code booking} is null when the payment did not go through. */
+class BookingOutcome {
+    public final PaymentResult payment;
+    public final Booking booking;
+
+    public BookingOutcome(PaymentResult payment, Booking booking) {
+        this.payment = payment; this.booking = booking;
+    }
+}
+
+/**
+ * Hold -> charge -> confirm. The room is held before any money moves, the charge runs
+ * asynchronously, and the hold is released if the charge fails, errors or times out.
+ */
+class BookingPipeline {
+    private static final int CONFIRM_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private final Hotel hotel;
+    private final PaymentGatewaySimulator gateway;
+    private final long holdTtlMillis;
+    private final long paymentTimeoutMillis;
+    private final ExecutorService confirmExecutor = Executors.newFixedThreadPool(CONFIRM_THREADS, r -> {
+        Thread t = new Thread(r, "booking-confirm");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public BookingPipeline(Hotel hotel, PaymentGatewaySimulator gateway, long holdTtlMillis, long paymentTimeoutMillis) {
+        this.hotel = hotel;
+        this.gateway = gateway;
+        this.holdTtlMillis = holdTtlMillis;
+        this.paymentTimeoutMillis = paymentTimeoutMillis;
+    }
+
+    public RoomHold hold(String roomId, String guestName, String guestEmail, LocalDate start, LocalDate end) {
+        return hotel.holdRoom(roomId, guestName, guestEmail, start, end, holdTtlMillis);
+    }
+
+    public CompletableFuture<BookingOutcome> chargeAndConfirm(RoomHold hold) {
+        return gateway.chargeAsync(hold.getTotalPrice())
+                .orTimeout(paymentTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handleAsync((res, err) -> { // off the gateway timer thread: confirming waits on the journal fsync
+                    if (err != null || !res.success) {
+                        hotel.releaseHold(hold.getHoldId());
+                        if (err != null) throw new CompletionException(err);
+                        return new BookingOutcome(res, null);
+                    }
+                    try {
+                        return new BookingOutcome(res, hotel.confirmHold(hold.getHoldId(), true));
+                    } catch (IllegalStateException e) {
+                        // The sweeper drops expired holds, so a lapsed hold usually shows up as not found.
+                        if (!(e instanceof HoldExpiredException) && hold.isExpired(System.currentTimeMillis())) {
+                            throw new HoldExpiredException("Hold expired before payment completed");
+                        }
+                        throw e;
+                    }
+                }, confirmExecutor);
+    }
+
+    public CompletableFuture<BookingOutcome> book(String roomId, String guestName, String guestEmail, LocalDate start, LocalDate end) {
+        RoomHold hold;
+        try {
+            hold = hold(roomId, guestName, guestEmail, start, end);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return chargeAndConfirm(hold);
+    }
+}
+
+// ----------------------- CLI / UI -----------------------
+class CLI implements Closeable {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private final Scanner scanner = new Scanner(System.in);
+    private final Hotel hotel = new Hotel();
+    private final PaymentGatewaySimulator gateway = new PaymentGatewaySimulator(0.9);
+    private final BookingPipeline pipeline = new BookingPipeline(hotel, gateway, 5 * 60 * 1000, 30 * 1000);
+
+    public void run() {
+        System.out.println("Welcome to the Hotel Reservation System (Java CLI)");
+        while (true) {
+            System.out.println("\nMenu:\n1) Search rooms\n2) Book a room\n3) Cancel booking\n4) View my bookings\n5) List room categories\n6) Show metrics\n7) Exit");
+            System.out.print("Select an option: ");
+            String choice = scanner.nextLine().trim();
+            try {
+                switch (choice) {
+                    case "1": cmdSearch(); break;
+                    case "2": cmdBook(); break;
+                    case "3": cmdCancel(); break;
+                    case "4": cmdViewBookings(); break;
+                    case "5": cmdListCategories(); break;
+                    case "6": System.out.print(Metrics.dump()); break;
+                    case "7": System.out.println("Goodbye!"); return;
+                    default: System.out.println("Invalid option");
+                }
+            } catch (Exception e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        hotel.close();
+    }
+
+    private void cmdListCategories() {
+        List<String> cats = hotel.listCategories();
+        System.out.println("Available categories:");
+        cats.forEach(c -> System.out.println("- " + c));
+    }
+
+    private void cmdSearch() {
+        LocalDate start = readDate("Enter check-in date (yyyy-MM-dd): ");
+        LocalDate end = readDate("Enter check-out date (yyyy-MM-dd): ");
+        System.out.print("Category (leave blank for any): ");
+        String cat = scanner.nextLine().trim();
+        if (cat.isEmpty()) cat = null;
+        List<Room> available = hotel.searchAvailableRooms(start, end, cat);
+        if (available.isEmpty()) {
+            System.out.println("No rooms available for the selected criteria.");
+            return;
+        }
+        System.out.println("Available rooms:");
+        for (int i = 0; i < available.size(); i++) {
+            Room r = available.get(i);
+            System.out.printf("%d) Number: %s, Category: %s, Price/night: %.2f, RoomID: %s\n", i+1, r.getNumber(), r.getCategory(), r.getPricePerNight(), r.getRoomId());
+        }
+    }
+
+    private void cmdBook() {
+        LocalDate start = readDate("Enter check-in date (yyyy-MM-dd): ");
+        LocalDate end = readDate("Enter check-out date (yyyy-MM-dd): ");
+        System.out.print("Category (leave blank for any): ");
+        String cat = scanner.nextLine().trim();
+        if (cat.isEmpty()) cat = null;
+        List<Room> available = hotel.searchAvailableRooms(start, end, cat);
+        if (available.isEmpty()) {
+            System.out.println("No rooms available for those dates/category.");
+            return;
+        }
+        System.out.println("Select a room by number:");
+        for (int i = 0; i < available.size(); i++) {
+            Room r = available.get(i);
+            System.out.printf("%d) %s - %s - %.2f\n", i+1, r.getNumber(), r.getCategory(), r.getPricePerNight());
+        }
+        int idx = readInt("Choice: ", 1, available.size()) - 1;
+        Room chosen = available.get(idx);
+        System.out.print("Guest name: ");
+        String name = scanner.nextLine().trim();
+        System.out.print("Guest email: ");
+        String email = scanner.nextLine().trim();
+
+        RoomHold hold = pipeline.hold(chosen.getRoomId(), name, email, start, end);
+        System.out.printf("Total price: %.2f\n", hold.getTotalPrice());
+        System.out.print("Proceed to payment? (yes/no): ");
+        String proceed = scanner.nextLine().trim().toLowerCase();
+        if (!proceed.equals("yes") && !proceed.equals("y")) {
+            hotel.releaseHold(hold.getHoldId());
+            System.out.println("Booking cancelled by user.");
+            return;
+        }
+        BookingOutcome outcome;
+        try {
+            outcome = pipeline.chargeAndConfirm(hold).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() instanceof TimeoutException ? new IllegalStateException("Payment timed out") : e.getCause();
+            System.out.println("Booking not completed: " + cause.getMessage());
+            return;
+        }
+        System.out.println(outcome.payment.message + " (txn: " + outcome.payment.transactionId + ")");
+        if (outcome.booking == null) {
+            System.out.println("Payment failed. Booking not completed.");
+            return;
+        }
+        System.out.println("Booking successful! ID: " + outcome.booking.getBookingId());
+    }
+
+    private void cmdCancel() {
+        System.out.print("Enter booking ID to cancel: ");
+        String id = scanner.nextLine().trim();
+        boolean ok = hotel.cancelBooking(id);
+        if (ok) System.out.println("Booking cancelled."); else System.out.println("Booking not found.");
+    }
+
+    private void cmdViewBookings() {
+        System.out.print("Enter your email to view bookings: ");
+        String email = scanner.nextLine().trim();
+        List<Booking> bs = hotel.findBookingsByEmail(email);
+        if (bs.isEmpty()) {
+            System.out.println("No bookings found for " + email);
+            return;
+        }
+        System.out.println("Bookings:");
+        for (Booking b : bs) {
+            System.out.println(b);
+        }
+    }
+
+    private LocalDate readDate(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String line = scanner.nextLine().trim();
+            try {
+                return LocalDate.parse(line, DATE_FORMAT);
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date format. Use yyyy-MM-dd.");
+            }
+        }
+    }
+
+    private int readInt(String prompt, int min, int max) {
+        while (true) {
+            System.out.print(prompt);
+            String line = scanner.nextLine().trim();
+            try {
+                int v = Integer.parseInt(line);
+                if (v < min || v > max) throw new NumberFormatException();
+                return v;
+            } catch (NumberFormatException e) {
+                System.out.printf("Enter a number between %d and %d.\n", min, max);
+            }
+        }
+    }
+}
+
+// ----------------------- HTTP Service -----------------------
+/**
+ * JSON over HTTP on the JDK's built-in server, backed by the same thread-safe {@link Hotel}.
+ *
+ * GET    /rooms?start=&end=&category=     available rooms
+ * POST   /bookings  roomId,name,email,start,end   hold, charge and confirm
+ * GET    /bookings?email=                 a guest's bookings
+ * GET    /bookings/{id}                   one booking
+ * DELETE /bookings/{id}                   cancel
+ * GET    /occupancy?from=&nights=         free rooms per night by category
+ * GET    /reports/revenue                 revenue, nights and paid/unpaid by category and month
+ * GET    /reports/occupancy?month=yyyy-MM  occupancy rate per room
+ * GET    /metrics                         plain-text metrics dump
+ *
+ * Parameters come from the query string or an application/x-www-form-urlencoded body.
+ * Responses are written straight to the chunked response stream.
+ */
+class HttpService {
+    private final Hotel hotel;
+    private final BookingPipeline pipeline;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public HttpService(Hotel hotel, BookingPipeline pipeline, int port) throws IOException {
+        this.hotel = hotel;
+        this.pipeline = pipeline;
+        this.server = HttpServer.create(new InetSocketAddress(port), 4096);
+        // JDK 17 has no virtual threads; handlers never block on payment, so a fixed pool suffices.
+        this.executor = Executors.newFixedThreadPool(Math.max(8, 4 * Runtime.getRuntime().availableProcessors()));
+        server.setExecutor(executor);
+        server.createContext("/rooms", ex -> handle(ex, this::rooms));
+        server.createContext("/bookings", ex -> handle(ex, this::bookings));
+        server.createContext("/occupancy", ex -> handle(ex, this::occupancy));
+        server.createContext("/reports", ex -> handle(ex, this::reports));
+        server.createContext("/metrics", ex -> handle(ex, (e, p) -> {
+            byte[] body = Metrics.dump().getBytes(StandardCharsets.UTF_8);
+            e.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            e.sendResponseHeaders(200, body.length);
+            try (OutputStream out = e.getResponseBody()) { out.write(body); }
+        }));
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Hotel Reservation System listening on http://localhost:" + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange ex, Map<String, String> params) throws IOException;
+    }
+
+    private void handle(HttpExchange ex, Handler handler) {
+        try {
+            handler.handle(ex, params(ex));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            error(ex, 400, e.getMessage());
+        } catch (Exception e) {
+            error(ex, 500, e.getMessage());
+        }
+    }
+
+    private void rooms(HttpExchange ex, Map<String, String> p) throws IOException {
+        if (!"GET".equals(ex.getRequestMethod())) { error(ex, 405, "Method not allowed"); return; }
+        LocalDate start = date(p, "start");
+        LocalDate end = date(p, "end");
+        if (!start.isBefore(end)) throw new IllegalArgumentException("End date must be after start date");
+        List<Room> rooms = hotel.searchAvailableRooms(start, end, p.get("category"));
+        try (Writer w = begin(ex, 200)) {
+            w.write('[');
+            for (int i = 0; i < rooms.size(); i++) {
+                if (i > 0) w.write(',');
+                writeRoom(w, rooms.get(i));
+            }
+            w.write(']');
+        }
+    }
+
+    private void bookings(HttpExchange ex, Map<String, String> p) throws IOException {
+        String path = ex.getRequestURI().getPath();
+        String id = path.startsWith("/bookings/") ? path.substring("/bookings/".length()) : "";
+        String method = ex.getRequestMethod();
+        if (!id.isEmpty() && "GET".equals(method)) {
+            Booking b = hotel.getBooking(id);
+            if (b == null) { error(ex, 404, "Booking not found"); return; }
+            try (Writer w = begin(ex, 200)) { writeBooking(w, b); }
+        } else if (!id.isEmpty() && "DELETE".equals(method)) {
+            if (!hotel.cancelBooking(id)) { error(ex, 404, "Booking not found"); return; }
+            try (Writer w = begin(ex, 200)) { w.write("{\"cancelled\":true}"); }
+        } else if (id.isEmpty() && "GET".equals(method)) {
+            List<Booking> found = hotel.findBookingsByEmail(required(p, "email"));
+            try (Writer w = begin(ex, 200)) {
+                w.write('[');
+                for (int i = 0; i < found.size(); i++) {
+                    if (i > 0) w.write(',');
+                    writeBooking(w, found.get(i));
+                }
+                w.write(']');
+            }
+        } else if (id.isEmpty() && "POST".equals(method)) {
+            // Completed from the confirm thread, so no request thread waits on the payment. Whatever
+            // happens while answering, the exchange is closed so the connection is not left hanging.
+            pipeline.book(required(p, "roomId"), required(p, "name"), email(p, "email"), date(p, "start"), date(p, "end"))
+                    .whenComplete((outcome, err) -> {
+                        try {
+                            if (err != null) {
+                                Throwable cause = err instanceof CompletionException ? err.getCause() : err;
+                                if (cause instanceof RoomUnavailableException) error(ex, 409, cause.getMessage());
+                                else if (cause instanceof HoldExpiredException) error(ex, 410, cause.getMessage());
+                                else if (cause instanceof IllegalArgumentException) error(ex, 400, cause.getMessage());
+                                else if (cause instanceof TimeoutException) error(ex, 504, "Payment timed out");
+                                else error(ex, 500, cause.getMessage());
+                            } else if (outcome.booking == null) {
+                                error(ex, 402, outcome.payment.message);
+                            } else {
+                                try (Writer w = begin(ex, 201)) { writeBooking(w, outcome.booking); }
+                            }
+                        } catch (IOException e) {
+                            // the client is gone; nothing left to tell it
+                        } catch (RuntimeException e) {
+                            error(ex, 500, e.getMessage());
+                        } finally {
+                            ex.close();
+                        }
+                    });
+        } else {
+            error(ex, 405, "Method not allowed");
+        }
+    }
+
+    private void occupancy(HttpExchange ex, Map<String, String> p) throws IOException {
+        LocalDate from = date(p, "from");
+        int nights = Integer.parseInt(p.getOrDefault("nights", "30"));
+        if (nights <= 0 || nights > 3660) throw new IllegalArgumentException("nights must be between 1 and 3660");
+        Map<String, int[]> free = hotel.freeRoomsPerNightByCategory(from, nights);
+        try (Writer w = begin(ex, 200)) {
+            w.write("{\"from\":\"" + from + "\",\"free\":{");
+            boolean first = true;
+            for (Map.Entry<String, int[]> e : free.entrySet()) {
+                if (!first) w.write(',');
+                first = false;
+                writeString(w, e.getKey());
+                w.write(":[");
+                int[] counts = e.getValue();
+                for (int i = 0; i < counts.length; i++) {
+                    if (i > 0) w.write(',');
+                    w.write(Integer.toString(counts[i]));
+                }
+                w.write(']');
+            }
+            w.write("}}");
+        }
+    }
+
+    private void reports(HttpExchange ex, Map<String, String> p) throws IOException {
+        String path = ex.getRequestURI().getPath();
+        RevenueAggregates agg = hotel.getAggregates();
+        if (path.equals("/reports/revenue")) {
+            List<RevenueAggregates.Row> rows = agg.revenueReport();
+            try (Writer w = begin(ex, 200)) {
+                w.write('[');
+                for (int i = 0; i < rows.size(); i++) {
+                    RevenueAggregates.Row r = rows.get(i);
+                    if (i > 0) w.write(',');
+                    w.write("{\"category\":");
+                    writeString(w, r.category);
+                    w.write(",\"month\":\"" + r.month + "\",\"revenue\":" + r.revenue + ",\"paid\":" + r.paid
+                            + ",\"unpaid\":" + r.unpaid + ",\"nights\":" + r.nights + ",\"bookings\":" + r.bookings + "}");
+                }
+                w.write(']');
+            }
+        } else if (path.equals("/reports/occupancy")) {
+            YearMonth month = YearMonth.parse(required(p, "month"));
+            List<Room> rooms = hotel.getRooms();
+            try (Writer w = begin(ex, 200)) {
+                w.write("{\"month\":\"" + month + "\",\"rooms\":[");
+                for (int i = 0; i < rooms.size(); i++) {
+                    Room r = rooms.get(i);
+                    if (i > 0) w.write(',');
+                    w.write("{\"number\":");
+                    writeString(w, r.getNumber());
+                    w.write(",\"nights\":" + agg.bookedNights(r.getRoomId(), month)
+                            + ",\"occupancy\":" + agg.occupancyRate(r.getRoomId(), month) + "}");
+                }
+                w.write("]}");
+            }
+        } else {
+            error(ex, 404, "Unknown report");
+        }
+    }
+
+    private static Writer begin(HttpExchange ex, int status) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, 0); // chunked
+        return new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 8192);
+    }
+
+    private static void error(HttpExchange ex, int status, String message) {
+        try (Writer w = begin(ex, status)) {
+            w.write("{\"error\":");
+            writeString(w, message == null ? "" : message);
+            w.write('}');
+        } catch (IOException e) {
+            ex.close();
+        }
+    }
+
+    private static void writeRoom(Writer w, Room r) throws IOException {
+        w.write("{\"roomId\":");
+        writeString(w, r.getRoomId());
+        w.write(",\"number\":");
+        writeString(w, r.getNumber());
+        w.write(",\"category\":");
+        writeString(w, r.getCategory());
+        w.write(",\"pricePerNight\":" + r.getPricePerNight() + "}");
+    }
+
+    private static void writeBooking(Writer w, Booking b) throws IOException {
+        w.write("{\"bookingId\":");
+        writeString(w, b.getBookingId());
+        w.write(",\"roomId\":");
+        writeString(w, b.getRoomId());
+        w.write(",\"guestName\":");
+        writeString(w, b.getGuestName());
+        w.write(",\"guestEmail\":");
+        writeString(w, b.getGuestEmail());
+        w.write(",\"startDate\":\"" + b.getStartDate() + "\",\"endDate\":\"" + b.getEndDate() + "\"");
+        w.write(",\"totalPrice\":" + b.getTotalPrice() + ",\"paid\":" + b.isPaid() + "}");
+    }
+
+    private static void writeString(Writer w, String s) throws IOException {
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': w.write("\\\""); break;
+                case '\\': w.write("\\\\"); break;
+                case '\n': w.write("\\n"); break;
+                case '\r': w.write("\\r"); break;
+                case '\t': w.write("\\t"); break;
+                default:
+                    if (c < 0x20) w.write(String.format("\\u%04x", (int) c));
+                    else w.write(c);
+            }
+        }
+        w.write('"');
+    }
+
+    private static Map<String, String> params(HttpExchange ex) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(ex.getRequestURI().getRawQuery(), params);
+        String type = ex.getRequestHeaders().getFirst("Content-Type");
+        if (type != null && type.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream in = ex.getRequestBody()) {
+                parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> into) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            into.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> p, String name) {
+        String v = p.get(name);
+        if (v == null || v.trim().isEmpty()) throw new IllegalArgumentException("Missing parameter: " + name);
+        return v.trim();
+    }
+
+    private static String email(Map<String, String> p, String name) {
+        String v = required(p, name);
+        int at = v.indexOf('@');
+        if (at <= 0 || at != v.lastIndexOf('@') || at == v.length() - 1 || v.indexOf(' ') >= 0) {
+            throw new IllegalArgumentException("Invalid email: " + v);
+        }
+        return v;
+    }
+
+    // Dates outside the calendar's range are rejected here, before any of them reaches the hotel.
+    private static LocalDate date(Map<String, String> p, String name) {
+        LocalDate date = LocalDate.parse(required(p, name), DateTimeFormatter.ISO_LOCAL_DATE);
+        LocalDate earliest = LocalDate.ofEpochDay(OccupancyCalendar.EPOCH);
+        if (date.isBefore(earliest) || date.isAfter(Hotel.latestCheckout())) {
+            throw new IllegalArgumentException(name + " must be between " + earliest + " and " + Hotel.latestCheckout());
+        }
+        return date;
+    }
+}